@@ -15,7 +15,9 @@
  */
 package com.twitt4droid.app.activity;
 
+import android.app.AlarmManager;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.res.Configuration;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -27,12 +29,14 @@ import android.support.v7.app.ActionBarActivity;
 import android.support.v7.app.ActionBarDrawerToggle;
 import android.support.v7.widget.Toolbar;
 import android.view.Gravity;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ImageView;
 import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.shamanland.fab.FloatingActionButton;
 
@@ -42,10 +46,12 @@ import com.twitt4droid.app.R;
 import com.twitt4droid.app.fragment.ListsFragment;
 import com.twitt4droid.app.widget.DrawerItem;
 import com.twitt4droid.app.widget.DrawerItemAdapter;
+import com.twitt4droid.app.widget.FlingFrameMeter;
 import com.twitt4droid.fragment.FixedQueryTimelineFragment;
 import com.twitt4droid.fragment.HomeTimelineFragment;
 import com.twitt4droid.fragment.MentionsTimelineFragment;
 import com.twitt4droid.fragment.QueryableTimelineFragment;
+import com.twitt4droid.sync.TimelineSync;
 import com.twitt4droid.util.Images.ImageLoader;
 import com.twitt4droid.util.Strings;
 import com.twitt4droid.widget.TweetDialog;
@@ -58,12 +64,15 @@ public class MainActivity extends ActionBarActivity {
 
     private static final String FRAGMENT_TAG = "CURRENT_FRAGMENT";
     private static final String CURRENT_TITLE_KEY = "CURRENT_TITLE";
+    private static final int FLING_DISTANCE = 20000;
+    private static final int FLING_DURATION = 2000;
 
     private Toolbar toolbar;
     private FloatingActionButton composeTweetButton;
     private DrawerLayout drawerLayout;
     private ActionBarDrawerToggle drawerToggle;
     private ListView drawerList;
+    private DrawerHeaderSetUpTask drawerHeaderSetUpTask;
     private int currentTitleId;
 
     @Override
@@ -77,9 +86,16 @@ public class MainActivity extends ActionBarActivity {
             homeTimelineFragment.setRetainInstance(true);
             setUpFragment(homeTimelineFragment);
             setTitle(R.string.drawer_home_option);
+            TimelineSync.schedule(getApplicationContext(), AlarmManager.INTERVAL_HOUR, false);
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        Twitt4droid.unregisterOnCurrentUserChangedListener(drawerHeaderSetUpTask);
+        super.onDestroy();
+    }
+
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
@@ -163,7 +179,9 @@ public class MainActivity extends ActionBarActivity {
         drawerMenuAdapter.add(new DrawerItem(R.drawable.twitt4droid_ic_search_holo_light, R.string.drawer_search_option));
         drawerMenuAdapter.add(new DrawerItem(R.drawable.ic_settings, R.string.drawer_settings_option));
         View drawerHeaderView = findViewById(R.id.drawer_header);
-        new DrawerHeaderSetUpTask(drawerHeaderView).execute();
+        drawerHeaderSetUpTask = new DrawerHeaderSetUpTask(drawerHeaderView);
+        Twitt4droid.registerOnCurrentUserChangedListener(drawerHeaderSetUpTask);
+        drawerHeaderSetUpTask.execute();
         drawerList.setOnItemClickListener(new DrawerItemClickListener());
         drawerList.setAdapter(drawerMenuAdapter);
     }
@@ -178,10 +196,33 @@ public class MainActivity extends ActionBarActivity {
         }
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        if (isDebuggable()) getMenuInflater().inflate(R.menu.debug, menu);
+        return super.onCreateOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (drawerToggle.onOptionsItemSelected(item)) return true;
-        return super.onOptionsItemSelected(item);
+        switch (item.getItemId()) {
+            case R.id.measure_fling_option:
+                measureFling();
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    private boolean isDebuggable() {
+        return (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    private void measureFling() {
+        ListView tweetsList = (ListView) findViewById(R.id.tweets_list);
+        if (tweetsList == null) return;
+        Toast.makeText(this, R.string.measure_fling_started_message, Toast.LENGTH_SHORT).show();
+        new FlingFrameMeter(tweetsList).fling(FLING_DISTANCE, FLING_DURATION);
     }
 
     @Override
@@ -202,7 +243,7 @@ public class MainActivity extends ActionBarActivity {
         getSupportActionBar().setTitle(currentTitleId);
     }
 
-    private class DrawerHeaderSetUpTask extends AsyncTask<Void, Void, User> {
+    private class DrawerHeaderSetUpTask extends AsyncTask<Void, Void, User> implements Twitt4droid.OnCurrentUserChangedListener {
 
         private final View drawerHeaderView;
         private final Twitter twitter;
@@ -230,7 +271,12 @@ public class MainActivity extends ActionBarActivity {
 
         @Override
         protected void onPostExecute(User result) {
-            if (result != null) setUpUser(result);
+            if (result != null) Twitt4droid.saveOrUpdateUser(result, getApplicationContext());
+        }
+
+        @Override
+        public void onCurrentUserChanged(User user) {
+            if (user != null) setUpUser(user);
         }
         
         @SuppressWarnings("deprecation")
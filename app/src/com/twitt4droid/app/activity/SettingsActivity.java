@@ -16,6 +16,7 @@
 package com.twitt4droid.app.activity;
 
 import android.app.AlertDialog;
+import android.app.ProgressDialog;
 import android.content.DialogInterface;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.os.Bundle;
@@ -26,8 +27,10 @@ import android.util.Log;
 import android.webkit.WebView;
 import android.widget.Toast;
 
+import com.twitt4droid.CacheCleaner;
 import com.twitt4droid.Twitt4droid;
 import com.twitt4droid.app.R;
+import com.twitt4droid.sync.TimelineSync;
 
 public class SettingsActivity extends PreferenceActivity {
 
@@ -38,6 +41,8 @@ public class SettingsActivity extends PreferenceActivity {
     private Preference closeSessionPreference;
     private Preference versionPreference;
     private ListPreference changeThemePreference;
+    private ProgressDialog clearCacheDialog;
+    private CacheCleaner cacheCleaner;
     
     @Override
     @SuppressWarnings("deprecation")
@@ -52,6 +57,14 @@ public class SettingsActivity extends PreferenceActivity {
         setUpVersionPreference();
     }
 
+    @Override
+    protected void onDestroy() {
+        if (cacheCleaner != null) cacheCleaner.setOnProgressListener(null); // it keeps clearing
+        cacheCleaner = null;
+        dismissClearCacheDialog();
+        super.onDestroy();
+    }
+
     @SuppressWarnings("deprecation")
     private void findPreferences() {
         licencesPreference = findPreference(getString(R.string.licences_key));
@@ -83,15 +96,44 @@ public class SettingsActivity extends PreferenceActivity {
 
             @Override
             public boolean onPreferenceClick(Preference preference) {
-                Twitt4droid.clearCache(getApplicationContext());
-                Toast.makeText(getApplicationContext(), 
-                        R.string.cache_cleared_message, 
-                        Toast.LENGTH_SHORT).show();
+                if (cacheCleaner != null) return true;
+                clearCacheDialog = new ProgressDialog(SettingsActivity.this);
+                clearCacheDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+                clearCacheDialog.setTitle(preference.getTitle());
+                clearCacheDialog.setCancelable(false);
+                clearCacheDialog.show();
+                cacheCleaner = new CacheCleaner(getApplicationContext())
+                    .setOnProgressListener(new CacheCleaner.OnProgressListener() {
+
+                        @Override
+                        public void onProgress(int done, int total) {
+                            clearCacheDialog.setMax(total);
+                            clearCacheDialog.setProgress(done);
+                        }
+
+                        @Override
+                        public void onFinished() {
+                            boolean isCancelled = cacheCleaner.isCancelled();
+                            cacheCleaner = null;
+                            dismissClearCacheDialog();
+                            if (!isCancelled) {
+                                Toast.makeText(getApplicationContext(), 
+                                        R.string.cache_cleared_message, 
+                                        Toast.LENGTH_SHORT).show();
+                            }
+                        }
+                    })
+                    .start();
                 return true;
             }
         });
     }
 
+    private void dismissClearCacheDialog() {
+        if (clearCacheDialog != null && clearCacheDialog.isShowing()) clearCacheDialog.dismiss();
+        clearCacheDialog = null;
+    }
+
     private void setUpChangeThemePreference() {
         changeThemePreference.setSummary(getString(R.string.change_theme_summary, changeThemePreference.getEntry()));
         changeThemePreference.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
@@ -123,7 +165,8 @@ public class SettingsActivity extends PreferenceActivity {
 
                         @Override
                         public void onClick(DialogInterface dialog, int which) {
-                            Twitt4droid.resetData(getApplicationContext());
+                            TimelineSync.cancel(getApplicationContext());
+                            Twitt4droid.resetData(getApplicationContext(), null);
                             dialog.dismiss();
                             finish();
                         }
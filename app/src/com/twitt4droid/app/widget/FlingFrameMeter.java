@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.app.widget;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.util.Log;
+import android.view.Choreographer;
+import android.widget.ListView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Debug tool of the sample app that measures frame times while a ListView performs a scripted
+ * fling, to check that binding rows doesn't drop frames. It's not part of the library API. Frames
+ * are timed with {@link Choreographer}, so it only works on JELLY_BEAN+. Debuggable builds run it
+ * on the current timeline from the "Measure fling" option of the MainActivity menu. Use it like
+ * this:
+ * <pre>
+ * {@code
+ * new FlingFrameMeter(listView).fling(20000, 2000); // results in logcat
+ * }
+ * </pre>
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class FlingFrameMeter {
+
+    private static final String TAG = FlingFrameMeter.class.getSimpleName();
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long FRAME_BUDGET_NANOS = 16666667L;
+
+    private final ListView listView;
+
+    /**
+     * Creates a FlingFrameMeter.
+     * 
+     * @param listView the ListView to fling.
+     */
+    public FlingFrameMeter(ListView listView) {
+        this.listView = listView;
+    }
+
+    /**
+     * Scrolls the ListView the given distance in the given time and logs the frame time
+     * percentiles and the frames over the 60fps budget when it is done. Must be called in the UI
+     * thread.
+     * 
+     * @param distance the distance to scroll in pixels.
+     * @param duration the duration of the scroll in milliseconds.
+     */
+    public void fling(int distance, int duration) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            Log.w(TAG, "Frame times need JELLY_BEAN+");
+            return;
+        }
+        new FrameRecorder(duration).start();
+        listView.smoothScrollBy(distance, duration);
+    }
+
+    /**
+     * Records the time between frames until the scroll ends.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameRecorder implements Choreographer.FrameCallback {
+
+        private final List<Long> frameTimes;
+        private final long durationNanos;
+        private long firstFrameNanos;
+        private long lastFrameNanos;
+
+        /** @param duration the duration of the scroll in milliseconds. */
+        private FrameRecorder(int duration) {
+            this.frameTimes = new ArrayList<>();
+            this.durationNanos = duration * NANOS_PER_MILLI;
+        }
+
+        /** Starts recording. */
+        private void start() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (firstFrameNanos == 0) firstFrameNanos = frameTimeNanos;
+            else frameTimes.add(frameTimeNanos - lastFrameNanos);
+            lastFrameNanos = frameTimeNanos;
+            if (frameTimeNanos - firstFrameNanos < durationNanos) Choreographer.getInstance().postFrameCallback(this);
+            else report();
+        }
+
+        /** Logs the results. */
+        private void report() {
+            if (frameTimes.isEmpty()) return;
+            long[] sorted = new long[frameTimes.size()];
+            int jankyFrames = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = frameTimes.get(i);
+                if (sorted[i] > FRAME_BUDGET_NANOS * 3 / 2) jankyFrames++; // a vsync was missed
+            }
+            Arrays.sort(sorted);
+            Log.i(TAG, String.format(Locale.US, "frames=%d janky=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                    sorted.length, jankyFrames,
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                    sorted[sorted.length - 1] / (double) NANOS_PER_MILLI));
+        }
+
+        /**
+         * @param sorted sorted frame times in nanoseconds.
+         * @param percentile a percentile.
+         * @return the given percentile in milliseconds.
+         */
+        private static double percentile(long[] sorted, int percentile) {
+            int index = Math.min(sorted.length - 1, sorted.length * percentile / 100);
+            return sorted[index] / (double) NANOS_PER_MILLI;
+        }
+    }
+}
\ No newline at end of file
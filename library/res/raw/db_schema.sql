@@ -64,7 +64,7 @@ CREATE TABLE any_list (
     name VARCHAR(100) NOT NULL,
     created_at INTEGER NOT NULL,
     profile_image_url VARCHAR(500) NOT NULL,
-    PRIMARY KEY (id)
+    PRIMARY KEY (id, list_id)
 );
 
 CREATE TABLE twitter_user (
@@ -85,4 +85,5 @@ CREATE INDEX mention_created_at_idx ON mention (created_at DESC);
 CREATE INDEX fixed_query_created_at_idx ON fixed_query (created_at DESC);
 CREATE INDEX any_user_created_at_idx ON any_user (created_at DESC);
 CREATE INDEX queryable_created_at_idx ON queryable (created_at DESC);
-CREATE INDEX any_list_created_at_idx ON any_list (created_at DESC);
\ No newline at end of file
+CREATE INDEX any_list_created_at_idx ON any_list (created_at DESC);
+CREATE INDEX any_list_list_id_idx ON any_list (list_id, created_at DESC);
\ No newline at end of file
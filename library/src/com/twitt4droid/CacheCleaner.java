@@ -0,0 +1,263 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Build;
+
+import com.twitt4droid.data.dao.impl.DAOFactory;
+import com.twitt4droid.data.source.Twitt4droidDatabaseHelper;
+import com.twitt4droid.util.Images;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Clears cached timelines and images in a background thread, reporting the progress in the UI
+ * thread. By default everything is cleared; call the {@code clear*} methods to clear only some
+ * parts and {@link #setMaxAge(long)} to keep the recent entries. Must be created and started in
+ * the UI thread. Use it like this:
+ * <pre>
+ * {@code
+ * new CacheCleaner(context)
+ *     .clearTimeline(CacheCleaner.Timeline.HOME)
+ *     .clearImages()
+ *     .setMaxAge(7 * 24 * 60 * 60 * 1000L) // keep the last week
+ *     .setOnProgressListener(listener)
+ *     .start();
+ * }
+ * </pre>
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class CacheCleaner extends AsyncTask<Void, Integer, Void> {
+
+    /** The timelines that can be cleared. */
+    public static enum Timeline { HOME, MENTIONS, USER, FIXED_QUERY, QUERYABLE, LISTS }
+
+    private final Context context;
+    private final EnumSet<Timeline> timelines;
+    private boolean isClearingImages;
+    private long maxAgeMillis;
+    private OnProgressListener onProgressListener;
+
+    /**
+     * Creates a CacheCleaner.
+     * 
+     * @param context the application context.
+     */
+    public CacheCleaner(Context context) {
+        this.context = context.getApplicationContext();
+        this.timelines = EnumSet.noneOf(Timeline.class);
+    }
+
+    /**
+     * Clears the given timeline.
+     * 
+     * @param timeline a timeline.
+     * @return this CacheCleaner.
+     */
+    public CacheCleaner clearTimeline(Timeline timeline) {
+        timelines.add(timeline);
+        return this;
+    }
+
+    /**
+     * Clears every timeline.
+     * 
+     * @return this CacheCleaner.
+     */
+    public CacheCleaner clearTimelines() {
+        timelines.addAll(EnumSet.allOf(Timeline.class));
+        return this;
+    }
+
+    /**
+     * Clears the image caches.
+     * 
+     * @return this CacheCleaner.
+     */
+    public CacheCleaner clearImages() {
+        isClearingImages = true;
+        return this;
+    }
+
+    /**
+     * Keeps the entries newer than the given age: statuses by creation date and images by
+     * download date. The memory cache of images is left as it is.
+     * 
+     * @param maxAgeMillis the age, in milliseconds, of the oldest entry to keep or {@code 0} to
+     *        clear every entry.
+     * @return this CacheCleaner.
+     */
+    public CacheCleaner setMaxAge(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+        return this;
+    }
+
+    /**
+     * @param onProgressListener the listener to notify in the UI thread.
+     * @return this CacheCleaner.
+     */
+    public CacheCleaner setOnProgressListener(OnProgressListener onProgressListener) {
+        this.onProgressListener = onProgressListener;
+        return this;
+    }
+
+    /**
+     * Starts clearing. On HONEYCOMB+ {@link #execute(Void...)} runs the tasks one at a time, so
+     * the clearing runs in the AsyncTask thread pool instead of delaying the timeline loaders.
+     * Must be called in the UI thread.
+     * 
+     * @return this CacheCleaner.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    public CacheCleaner start() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        else execute();
+        return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Void doInBackground(Void... params) {
+        boolean isClearingAll = timelines.isEmpty() && !isClearingImages;
+        List<Runnable> steps = new ArrayList<>();
+        if (isClearingAll && maxAgeMillis <= 0) {
+            steps.add(new Runnable() {
+
+                @Override
+                public void run() {
+                    Twitt4droidDatabaseHelper.destroyDb(context);
+                }
+            });
+        } else {
+            for (Timeline timeline : isClearingAll ? EnumSet.allOf(Timeline.class) : timelines) steps.add(new TimelineClearStep(timeline));
+        }
+        if (isClearingAll || isClearingImages) {
+            steps.add(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (maxAgeMillis > 0) Images.clearCacheOlderThan(maxAgeMillis);
+                    else Images.clearCache();
+                }
+            });
+        }
+        publishProgress(0, steps.size());
+        for (int step = 0; step < steps.size(); step++) {
+            if (isCancelled()) break;
+            steps.get(step).run();
+            publishProgress(step + 1, steps.size());
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void onProgressUpdate(Integer... values) {
+        if (onProgressListener != null) onProgressListener.onProgress(values[0], values[1]);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void onPostExecute(Void result) {
+        if (onProgressListener != null) onProgressListener.onFinished();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void onCancelled() {
+        if (onProgressListener != null) onProgressListener.onFinished();
+    }
+
+    /**
+     * Deletes the statuses of a timeline.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private class TimelineClearStep implements Runnable {
+
+        private final Timeline timeline;
+
+        /** @param timeline the timeline to clear. */
+        private TimelineClearStep(Timeline timeline) {
+            this.timeline = timeline;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            DAOFactory daoFactory = new DAOFactory(context);
+            long timestamp = System.currentTimeMillis() - maxAgeMillis;
+            boolean isClearingAll = maxAgeMillis <= 0;
+            switch (timeline) {
+                case HOME:
+                    if (isClearingAll) daoFactory.getHomeTimelineDAO().deleteAll();
+                    else daoFactory.getHomeTimelineDAO().deleteOlderThan(timestamp);
+                    break;
+                case MENTIONS:
+                    if (isClearingAll) daoFactory.getMentionsTimelineDAO().deleteAll();
+                    else daoFactory.getMentionsTimelineDAO().deleteOlderThan(timestamp);
+                    break;
+                case USER:
+                    if (isClearingAll) daoFactory.getUserTimelineDAO().deleteAll();
+                    else daoFactory.getUserTimelineDAO().deleteOlderThan(timestamp);
+                    break;
+                case FIXED_QUERY:
+                    if (isClearingAll) daoFactory.getFixedQueryTimelineDAO().deleteAll();
+                    else daoFactory.getFixedQueryTimelineDAO().deleteOlderThan(timestamp);
+                    break;
+                case QUERYABLE:
+                    if (isClearingAll) daoFactory.getQueryableTimelineDAO().deleteAll();
+                    else daoFactory.getQueryableTimelineDAO().deleteOlderThan(timestamp);
+                    break;
+                case LISTS:
+                    if (isClearingAll) daoFactory.getListTimelineDAO().deleteAll();
+                    else daoFactory.getListTimelineDAO().deleteOlderThan(timestamp);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Interface definition for callbacks to be invoked while the cache is cleared.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static interface OnProgressListener {
+
+        /**
+         * Called in the UI thread before the first step and after each one.
+         * 
+         * @param done how many steps are done.
+         * @param total how many steps there are.
+         */
+        void onProgress(int done, int total);
+
+        /**
+         * Called in the UI thread when the cache was cleared or, if the CacheCleaner was
+         * cancelled, when it stopped; {@link CacheCleaner#isCancelled()} tells which.
+         */
+        void onFinished();
+    }
+}
\ No newline at end of file
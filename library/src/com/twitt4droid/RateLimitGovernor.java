@@ -0,0 +1,196 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid;
+
+import android.util.Log;
+
+import twitter4j.RateLimitStatus;
+import twitter4j.TwitterException;
+import twitter4j.TwitterResponse;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of the Twitter REST API rate limit windows, per endpoint, from the
+ * {@link RateLimitStatus} returned with each response. Timelines ask it before going to the
+ * network and serve their cache while the window of their endpoint is exhausted. The remaining
+ * quota can be shown to the user like this:
+ * <pre>
+ * {@code
+ * int remaining = RateLimitGovernor.getRemaining(RateLimitGovernor.HOME_TIMELINE);
+ * if (remaining >= 0) label.setText(remaining + " requests left");
+ * }
+ * </pre>
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public final class RateLimitGovernor {
+
+    /** The home timeline endpoint. */
+    public static final String HOME_TIMELINE = "/statuses/home_timeline";
+
+    /** The mentions timeline endpoint. */
+    public static final String MENTIONS_TIMELINE = "/statuses/mentions_timeline";
+
+    /** The user timeline endpoint. */
+    public static final String USER_TIMELINE = "/statuses/user_timeline";
+
+    /** The list statuses endpoint. */
+    public static final String LIST_STATUSES = "/lists/statuses";
+
+    /** The user lists endpoint. */
+    public static final String USER_LISTS = "/lists/list";
+
+    /** The search endpoint. */
+    public static final String SEARCH = "/search/tweets";
+
+    private static final String TAG = RateLimitGovernor.class.getSimpleName();
+    private static final long DEFAULT_WINDOW_MILLIS = 15 * 60 * 1000L;
+    private static final ConcurrentMap<String, Window> WINDOWS = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor. Do NOT try to initialize this class, it is suppose
+     * to be an static utility.
+     */
+    private RateLimitGovernor() {
+        throw new IllegalAccessError("This class cannot be instantiated nor extended");
+    }
+
+    /**
+     * Records the rate limit status of the given response.
+     * 
+     * @param endpoint the endpoint that returned the response.
+     * @param response a response; it's ignored if it has no rate limit status.
+     */
+    public static void record(String endpoint, TwitterResponse response) {
+        if (endpoint == null || response == null) return;
+        RateLimitStatus rateLimitStatus = response.getRateLimitStatus();
+        if (rateLimitStatus != null) {
+            WINDOWS.put(endpoint, new Window(rateLimitStatus.getLimit(),
+                    rateLimitStatus.getRemaining(),
+                    System.currentTimeMillis() + rateLimitStatus.getSecondsUntilReset() * 1000L));
+        }
+    }
+
+    /**
+     * Records that the window of the given endpoint is exhausted, until the reset time of the
+     * exception or, if it has none, for a whole window.
+     * 
+     * @param endpoint the endpoint that failed.
+     * @param ex the rate limit exception.
+     */
+    public static void recordExceeded(String endpoint, TwitterException ex) {
+        if (endpoint == null) return;
+        RateLimitStatus rateLimitStatus = ex.getRateLimitStatus();
+        long resetAtMillis;
+        int limit;
+        if (rateLimitStatus != null && rateLimitStatus.getSecondsUntilReset() > 0) {
+            resetAtMillis = System.currentTimeMillis() + rateLimitStatus.getSecondsUntilReset() * 1000L;
+            limit = rateLimitStatus.getLimit();
+        } else {
+            resetAtMillis = System.currentTimeMillis() + DEFAULT_WINDOW_MILLIS;
+            limit = -1;
+        }
+        WINDOWS.put(endpoint, new Window(limit, 0, resetAtMillis));
+        Log.w(TAG, "Rate limit exceeded for " + endpoint + ", next request in " + getSecondsUntilReset(endpoint) + "s");
+    }
+
+    /**
+     * @param endpoint an endpoint.
+     * @return if a request to the given endpoint can be made now: its window is unknown, has
+     *         requests left or already reset.
+     */
+    public static boolean canRequest(String endpoint) {
+        Window window = getWindow(endpoint);
+        return window == null || window.remaining > 0;
+    }
+
+    /**
+     * @param endpoint an endpoint.
+     * @return the requests left in the current window of the given endpoint or {@code -1} if
+     *         unknown.
+     */
+    public static int getRemaining(String endpoint) {
+        Window window = getWindow(endpoint);
+        return window == null ? -1 : window.remaining;
+    }
+
+    /**
+     * @param endpoint an endpoint.
+     * @return the requests allowed per window of the given endpoint or {@code -1} if unknown.
+     */
+    public static int getLimit(String endpoint) {
+        Window window = getWindow(endpoint);
+        return window == null ? -1 : window.limit;
+    }
+
+    /**
+     * @param endpoint an endpoint.
+     * @return the seconds until the window of the given endpoint resets or {@code 0} if unknown.
+     */
+    public static int getSecondsUntilReset(String endpoint) {
+        Window window = getWindow(endpoint);
+        return window == null ? 0 : (int) ((window.resetAtMillis - System.currentTimeMillis() + 999L) / 1000L);
+    }
+
+    /** Forgets every window, for example when the user logs out. */
+    public static void reset() {
+        WINDOWS.clear();
+    }
+
+    /**
+     * @param endpoint an endpoint.
+     * @return the current window of the given endpoint or {@code null} if unknown or already
+     *         reset.
+     */
+    private static Window getWindow(String endpoint) {
+        if (endpoint == null) return null;
+        Window window = WINDOWS.get(endpoint);
+        if (window != null && window.resetAtMillis <= System.currentTimeMillis()) {
+            WINDOWS.remove(endpoint, window);
+            return null;
+        }
+        return window;
+    }
+
+    /**
+     * A rate limit window.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private static class Window {
+
+        private final int limit;
+        private final int remaining;
+        private final long resetAtMillis;
+
+        /**
+         * Creates a Window.
+         * 
+         * @param limit the requests allowed per window.
+         * @param remaining the requests left.
+         * @param resetAtMillis when the window resets.
+         */
+        private Window(int limit, int remaining, long resetAtMillis) {
+            this.limit = limit;
+            this.remaining = remaining;
+            this.resetAtMillis = resetAtMillis;
+        }
+    }
+}
\ No newline at end of file
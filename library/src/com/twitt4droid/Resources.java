@@ -15,12 +15,14 @@
  */
 package com.twitt4droid;
 
+import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.Build;
 import android.util.Log;
 
 /**
@@ -52,6 +54,19 @@ public final class Resources {
         return context.getSharedPreferences(name, Context.MODE_PRIVATE);
     }
 
+    /**
+     * Saves the changes of the given editor without waiting for the disk. On GINGERBREAD+ the
+     * changes are visible in memory right away and written in background with
+     * {@code apply()}; older versions don't have it and fall back to {@code commit()}.
+     * 
+     * @param editor the editor with the changes to save.
+     */
+    @SuppressLint("NewApi")
+    public static void apply(SharedPreferences.Editor editor) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) editor.apply();
+        else editor.commit();
+    }
+
     /**
      * Gets a {@code String} from the meta data specified in the
      * AndroidManifest.xml.
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Toast;
+
+import twitter4j.AsyncTwitter;
+import twitter4j.Status;
+import twitter4j.TwitterAdapter;
+import twitter4j.TwitterException;
+import twitter4j.TwitterMethod;
+
+/**
+ * Dispatches retweets and favorites through a single process-wide AsyncTwitter. Its only
+ * listener holds the application context, never an Activity, so screens can be recreated
+ * freely while their actions are in flight; results are reported with a Toast.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public final class StatusActionDispatcher {
+
+    private static final String TAG = StatusActionDispatcher.class.getSimpleName();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private static AsyncTwitter twitter;
+
+    /**
+     * Default constructor. Do NOT try to initialize this class, it is suppose
+     * to be an static utility.
+     */
+    private StatusActionDispatcher() {
+        throw new IllegalAccessError("This class cannot be instantiated nor extended");
+    }
+
+    /**
+     * Retweets the given status, or shows the offline message if there is no connection.
+     * 
+     * @param context the application context.
+     * @param statusId the status id.
+     */
+    public static void retweet(Context context, long statusId) {
+        if (Resources.isConnectedToInternet(context)) getTwitter(context).retweetStatus(statusId);
+        else showToast(context.getApplicationContext(), R.string.twitt4droid_is_offline_messege, Toast.LENGTH_LONG);
+    }
+
+    /**
+     * Favorites the given status, or shows the offline message if there is no connection.
+     * 
+     * @param context the application context.
+     * @param statusId the status id.
+     */
+    public static void favorite(Context context, long statusId) {
+        if (Resources.isConnectedToInternet(context)) getTwitter(context).createFavorite(statusId);
+        else showToast(context.getApplicationContext(), R.string.twitt4droid_is_offline_messege, Toast.LENGTH_LONG);
+    }
+
+    /**
+     * Forgets the current AsyncTwitter so the next action uses the current authentication
+     * information. Actions already dispatched finish with the old one.
+     */
+    static synchronized void reset() {
+        twitter = null;
+    }
+
+    /**
+     * @param context the application context.
+     * @return the shared AsyncTwitter, created on first use.
+     */
+    private static synchronized AsyncTwitter getTwitter(Context context) {
+        if (twitter == null) {
+            final Context appContext = context.getApplicationContext();
+            twitter = Twitt4droid.getAsyncTwitter(appContext);
+            twitter.addListener(new TwitterAdapter() {
+
+                @Override
+                public void createdFavorite(Status status) {
+                    showToast(appContext, R.string.twitt4droid_tweet_favorited, Toast.LENGTH_SHORT);
+                }
+
+                @Override
+                public void retweetedStatus(Status retweetedStatus) {
+                    showToast(appContext, R.string.twitt4droid_tweet_retweeted, Toast.LENGTH_SHORT);
+                }
+
+                @Override
+                public void onException(TwitterException te, TwitterMethod method) {
+                    Log.e(TAG, "Twitter error in" + method, te);
+                    showToast(appContext, R.string.twitt4droid_error_message, Toast.LENGTH_SHORT);
+                }
+            });
+        }
+        return twitter;
+    }
+
+    /**
+     * Shows a Toast in the UI thread.
+     * 
+     * @param appContext the application context.
+     * @param messageId the message string resource.
+     * @param duration the Toast duration.
+     */
+    private static void showToast(final Context appContext, final int messageId, final int duration) {
+        MAIN_HANDLER.post(new Runnable() {
+
+            @Override
+            public void run() {
+                Toast.makeText(appContext, messageId, duration).show();
+            }
+        });
+    }
+}
\ No newline at end of file
@@ -17,13 +17,15 @@ package com.twitt4droid;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.twitt4droid.data.source.Twitt4droidDatabaseHelper;
 import com.twitt4droid.util.Images;
+import com.twitt4droid.util.Json;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 
 import twitter4j.AsyncTwitter;
 import twitter4j.AsyncTwitterFactory;
@@ -38,6 +40,8 @@ import twitter4j.conf.Configuration;
 import twitter4j.conf.ConfigurationBuilder;
 
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Utility class for loading Twitter configurations.
@@ -47,6 +51,13 @@ import java.util.Date;
  */
 public final class Twitt4droid {
 
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final List<OnCurrentUserChangedListener> CURRENT_USER_LISTENERS = new CopyOnWriteArrayList<>();
+    private static final Object CURRENT_USER_LOCK = new Object();
+
+    private static volatile User currentUser;
+    private static volatile boolean isCurrentUserLoaded;
+
     /**
      * Default constructor. Do NOT try to initialize this class, it is suppose
      * to be an static utility.
@@ -116,12 +127,13 @@ public final class Twitt4droid {
      * @param token an AccessToken.
      */
     public static void saveAuthenticationInfo(Context context, AccessToken token) {
-        Resources.getPreferences(context)
+        Resources.apply(Resources.getPreferences(context)
             .edit()
             .putString(context.getString(R.string.twitt4droid_oauth_token_key), token.getToken())
             .putString(context.getString(R.string.twitt4droid_oauth_secret_key), token.getTokenSecret())
-            .putBoolean(context.getString(R.string.twitt4droid_user_is_logged_in_key), true)
-            .commit();
+            .putBoolean(context.getString(R.string.twitt4droid_user_is_logged_in_key), true));
+        StatusActionDispatcher.reset();
+        RateLimitGovernor.reset();
     }
 
     /**
@@ -130,25 +142,28 @@ public final class Twitt4droid {
      * @param context the application context.
      */
     public static void deleteAuthenticationInfo(Context context) {
-        Resources.getPreferences(context)
+        Resources.apply(Resources.getPreferences(context)
             .edit()
             .remove(context.getString(R.string.twitt4droid_oauth_token_key))
             .remove(context.getString(R.string.twitt4droid_oauth_secret_key))
-            .remove(context.getString(R.string.twitt4droid_user_is_logged_in_key))
-            .commit();
+            .remove(context.getString(R.string.twitt4droid_user_is_logged_in_key)));
+        StatusActionDispatcher.reset();
+        RateLimitGovernor.reset();
     }
 
     /**
-     * Saves a twitter user.
+     * Saves a twitter user and makes it the current user.
      * 
      * @param user the user to save.
      * @param context the application context.
      */
     public static void saveOrUpdateUser(User user, Context context) {
-        Resources.getPreferences(context)
-            .edit()
-            .putString(context.getString(R.string.twitt4droid_user_key), UserJSONImpl.toJSON(user))
-            .commit();
+        synchronized (CURRENT_USER_LOCK) {
+            Resources.apply(Resources.getPreferences(context)
+                .edit()
+                .putString(context.getString(R.string.twitt4droid_user_key), UserJSONImpl.toJSON(user)));
+            setCurrentUser(user);
+        }
     }
 
     /**
@@ -157,27 +172,76 @@ public final class Twitt4droid {
      * @param context the application context.
      */
     public static void deleteCurrentUser(Context context) {
-        Resources.getPreferences(context)
-            .edit()
-            .remove(context.getString(R.string.twitt4droid_user_key))
-            .commit();
+        synchronized (CURRENT_USER_LOCK) {
+            Resources.apply(Resources.getPreferences(context)
+                .edit()
+                .remove(context.getString(R.string.twitt4droid_user_key)));
+            setCurrentUser(null);
+        }
     }
 
     /**
-     * Gets the current twitter user.
+     * Gets the current twitter user. It is read from {@code SharedPreferences} only the first time;
+     * after that the same instance is returned until the user is saved or deleted.
      * 
      * @param context the application context.
      * @return the current twitter user if exists; otherwise {@code null}.
      */
     public static User getCurrentUser(Context context) {
-        String json = Resources.getPreferences(context).getString(
-                context.getString(R.string.twitt4droid_user_key),
-                null);
-        return UserJSONImpl.fromJSON(json);
+        if (isCurrentUserLoaded) return currentUser;
+        synchronized (CURRENT_USER_LOCK) {
+            if (!isCurrentUserLoaded) {
+                String json = Resources.getPreferences(context).getString(
+                        context.getString(R.string.twitt4droid_user_key),
+                        null);
+                currentUser = json == null ? null : UserJSONImpl.fromJSON(json);
+                isCurrentUserLoaded = true;
+            }
+            return currentUser;
+        }
+    }
+
+    /**
+     * Registers a listener to be notified in the UI thread when the current user is saved or
+     * deleted. Don't forget to unregister it when the screen is destroyed.
+     * 
+     * @param listener the listener to register.
+     */
+    public static void registerOnCurrentUserChangedListener(OnCurrentUserChangedListener listener) {
+        CURRENT_USER_LISTENERS.add(listener);
     }
 
     /**
-     * Deletes all information stored in databases and image caches.
+     * Unregisters a listener registered with
+     * {@link #registerOnCurrentUserChangedListener(OnCurrentUserChangedListener)}.
+     * 
+     * @param listener the listener to unregister.
+     */
+    public static void unregisterOnCurrentUserChangedListener(OnCurrentUserChangedListener listener) {
+        CURRENT_USER_LISTENERS.remove(listener);
+    }
+
+    /**
+     * Replaces the cached current user and notifies the listeners in the UI thread. Must be
+     * called holding {@code CURRENT_USER_LOCK}.
+     * 
+     * @param user the new current user or {@code null} if there is none.
+     */
+    private static void setCurrentUser(final User user) {
+        currentUser = user;
+        isCurrentUserLoaded = true;
+        MAIN_HANDLER.post(new Runnable() {
+
+            @Override
+            public void run() {
+                for (OnCurrentUserChangedListener listener : CURRENT_USER_LISTENERS) listener.onCurrentUserChanged(user);
+            }
+        });
+    }
+
+    /**
+     * Deletes all information stored in databases and image caches. It blocks until everything is
+     * deleted, which may take seconds; use {@link CacheCleaner} in the UI thread.
      * 
      * @param context the application context.
      */
@@ -187,20 +251,66 @@ public final class Twitt4droid {
     }
 
     /**
-     * Deletes all information stored by twitt4droid.
+     * Deletes all information stored by twitt4droid. It blocks until everything is deleted,
+     * which may take seconds; use {@link #resetData(Context, CacheCleaner.OnProgressListener)} in
+     * the UI thread.
      * 
      * @param context the application context.
      */
     public static void resetData(Context context) {
-        Resources.getPreferences(context)
-            .edit()
-            .clear()
-            .commit();
-        
+        resetPreferences(context);
         Twitt4droidDatabaseHelper.destroyDb(context);
         Images.clearCache();
     }
 
+    /**
+     * Deletes all information stored by twitt4droid. The preferences, and so the session, are
+     * deleted right away; databases and image caches are deleted in background. Must be called in
+     * the UI thread.
+     * 
+     * @param context the application context.
+     * @param onProgressListener the listener to notify while caches are deleted or {@code null}.
+     */
+    public static void resetData(Context context, CacheCleaner.OnProgressListener onProgressListener) {
+        resetPreferences(context);
+        new CacheCleaner(context)
+            .setOnProgressListener(onProgressListener)
+            .start();
+    }
+
+    /**
+     * Deletes all the preferences stored by twitt4droid.
+     * 
+     * @param context the application context.
+     */
+    private static void resetPreferences(Context context) {
+        synchronized (CURRENT_USER_LOCK) {
+            Resources.apply(Resources.getPreferences(context)
+                .edit()
+                .clear());
+            setCurrentUser(null);
+        }
+        StatusActionDispatcher.reset();
+        RateLimitGovernor.reset();
+    }
+
+    /**
+     * Interface definition for a callback to be invoked when the current user is saved or
+     * deleted.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static interface OnCurrentUserChangedListener {
+
+        /**
+         * Called in the UI thread when the current user changes.
+         * 
+         * @param user the new current user or {@code null} if it was deleted.
+         */
+        void onCurrentUserChanged(User user);
+    }
+
     /**
      * Twitter user json implementation.
      * 
@@ -230,44 +340,45 @@ public final class Twitt4droid {
          * @return a json string.
          */
         private static String toJSON(User user) {
-            return new StringBuilder()
-                .append("{")
-                .append("\"id\": ").append(user.getId()).append(", ")
-                .append("\"name\": ").append("\"").append(user.getName()).append("\"").append(", ")
-                .append("\"screenName\": ").append("\"").append(user.getScreenName()).append("\"").append(", ")
-                .append("\"profileImageURL\": ").append("\"").append(user.getProfileImageURL()).append("\"").append(", ")
-                .append("\"profileBannerURL\": ").append("\"").append(user.getProfileBannerURL()).append("\"").append(", ")
-                .append("\"url\": ").append("\"").append(user.getURL()).append("\"").append(", ")
-                .append("\"description\": ").append("\"").append(user.getDescription()).append("\"").append(", ")
-                .append("\"location\": ").append("\"").append(user.getLocation()).append("\"")
-                .append("}")
+            return new Json.ObjectWriter()
+                .put("id", user.getId())
+                .put("name", user.getName())
+                .put("screenName", user.getScreenName())
+                .put("profileImageURL", user.getProfileImageURL())
+                .put("profileBannerURL", user.getProfileBannerURL())
+                .put("url", user.getURL())
+                .put("description", user.getDescription())
+                .put("location", user.getLocation())
                 .toString();
         }
 
         /**
-         * Converts a json string to a user.
+         * Converts a json string to a user. Unknown fields are skipped.
          * 
          * @param json a json string
-         * @return a user.
+         * @return a user or {@code null} if the json string is malformed.
          */
         private static User fromJSON(String json) {
-            UserJSONImpl user = null;
             try {
-                JSONObject obj = new JSONObject(json);
-                user = new UserJSONImpl();
-                user.id = obj.getLong("id");
-                user.name = obj.getString("name");
-                user.screenName = obj.getString("screenName");
-                user.profileImageURL = obj.getString("profileImageURL");
-                user.profileBannerURL = obj.getString("profileBannerURL");
-                user.url = obj.getString("url");
-                user.description = obj.getString("description");
-                user.location = obj.getString("location");
+                Json.ObjectReader reader = new Json.ObjectReader(json);
+                UserJSONImpl user = new UserJSONImpl();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if ("id".equals(field)) user.id = reader.nextLong();
+                    else if ("name".equals(field)) user.name = reader.nextString();
+                    else if ("screenName".equals(field)) user.screenName = reader.nextString();
+                    else if ("profileImageURL".equals(field)) user.profileImageURL = reader.nextString();
+                    else if ("profileBannerURL".equals(field)) user.profileBannerURL = reader.nextString();
+                    else if ("url".equals(field)) user.url = reader.nextString();
+                    else if ("description".equals(field)) user.description = reader.nextString();
+                    else if ("location".equals(field)) user.location = reader.nextString();
+                    else reader.skipValue();
+                }
+                return user;
             } catch (JSONException ex) {
                 Log.e(TAG, "Error while parsing user json string", ex);
+                return null;
             }
-
-            return user;
         }
         
         @Override
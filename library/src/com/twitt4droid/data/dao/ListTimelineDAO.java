@@ -36,7 +36,15 @@ public interface ListTimelineDAO extends GenericDAO<Status, Long> {
     List<Status> fetchListByListId(Long listId);
 
     /**
-     * Saves all the given statuses in the given list.
+     * Returns the id of the newest status from the given list.
+     * 
+     * @param listId the list id.
+     * @return the status id or {@code null} if there are none.
+     */
+    Long fetchNewestIdByListId(Long listId);
+
+    /**
+     * Saves all the given statuses in the given list, replacing the ones already saved.
      * 
      * @param statuses statuses.
      * @param listId the list id.
@@ -49,4 +57,22 @@ public interface ListTimelineDAO extends GenericDAO<Status, Long> {
      * @param listId the list id.
      */
     void deleteAllByListId(Long listId);
+
+    /**
+     * Deletes all statuses in the given list except the given number of newest ones.
+     * 
+     * @param listId the list id.
+     * @param count how many statuses to keep.
+     */
+    void deleteAllButNewestByListId(Long listId, int count);
+
+    /** Deletes all statuses in every list. */
+    void deleteAll();
+
+    /**
+     * Deletes the statuses, in every list, created before the given time.
+     * 
+     * @param timestamp a time in milliseconds since epoch.
+     */
+    void deleteOlderThan(long timestamp);
 }
\ No newline at end of file
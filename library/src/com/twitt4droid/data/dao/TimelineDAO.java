@@ -27,6 +27,9 @@ import twitter4j.Status;
  */
 public interface TimelineDAO extends GenericDAO<Status, Long> { 
 
+    /** How many statuses of a timeline are kept in the cache. */
+    int MAX_CACHED_STATUSES = 800;
+
     /** 
      * Returns all statuses.
      * 
@@ -34,8 +37,11 @@ public interface TimelineDAO extends GenericDAO<Status, Long> {
      */
     List<Status> fetchList();
 
+    /** @return the id of the newest status or {@code null} if there are none. */
+    Long fetchNewestId();
+
     /**
-     * Saves all the given statuses.
+     * Saves all the given statuses, replacing the ones already saved.
      * 
      * @param statuses statuses.
      */
@@ -43,4 +49,18 @@ public interface TimelineDAO extends GenericDAO<Status, Long> {
 
     /** Deletes all statuses. */
     void deleteAll();
+
+    /**
+     * Deletes the statuses created before the given time.
+     * 
+     * @param timestamp a time in milliseconds since epoch.
+     */
+    void deleteOlderThan(long timestamp);
+
+    /**
+     * Deletes all statuses except the given number of newest ones.
+     * 
+     * @param count how many statuses to keep.
+     */
+    void deleteAllButNewest(int count);
 }
\ No newline at end of file
@@ -36,21 +36,24 @@ import com.twitt4droid.data.source.Twitt4droidDatabaseHelper;
 public class DAOFactory {
 
     private final Context context;
+    private final Twitt4droidDatabaseHelper databaseHelper;
 
     /**
-     * Creates a DAOFactory.
+     * Creates a DAOFactory. Every DAO, from every DAOFactory, shares the same
+     * {@link Twitt4droidDatabaseHelper#getInstance(Context) database helper}.
      * 
      * @param context the application context.
      */
     public DAOFactory(Context context) {
         this.context = context;
+        this.databaseHelper = Twitt4droidDatabaseHelper.getInstance(context);
     }
 
     /** @return a new HomeTimelineDAO. */
     public TimelineDAO getHomeTimelineDAO() {
         TimelineSQLiteDAO dao = new TimelineSQLiteDAO(TimelineSQLiteDAO.Table.HOME);
         dao.setContext(context);
-        dao.setSQLiteOpenHelper(new Twitt4droidDatabaseHelper(context));
+        dao.setSQLiteOpenHelper(databaseHelper);
         return dao;
     }
 
@@ -58,7 +61,7 @@ public class DAOFactory {
     public TimelineDAO getMentionsTimelineDAO() {
         TimelineSQLiteDAO dao = new TimelineSQLiteDAO(TimelineSQLiteDAO.Table.MENTION);
         dao.setContext(context);
-        dao.setSQLiteOpenHelper(new Twitt4droidDatabaseHelper(context));
+        dao.setSQLiteOpenHelper(databaseHelper);
         return dao;
     }
 
@@ -66,7 +69,7 @@ public class DAOFactory {
     public UserTimelineDAO getUserTimelineDAO() {
         UserTimelineSQLiteDAO dao = new UserTimelineSQLiteDAO();
         dao.setContext(context);
-        dao.setSQLiteOpenHelper(new Twitt4droidDatabaseHelper(context));
+        dao.setSQLiteOpenHelper(databaseHelper);
         return dao;
     }
 
@@ -74,7 +77,7 @@ public class DAOFactory {
     public TimelineDAO getFixedQueryTimelineDAO() {
         TimelineSQLiteDAO dao = new TimelineSQLiteDAO(TimelineSQLiteDAO.Table.FIXED_QUERY);
         dao.setContext(context);
-        dao.setSQLiteOpenHelper(new Twitt4droidDatabaseHelper(context));
+        dao.setSQLiteOpenHelper(databaseHelper);
         return dao;
     }
 
@@ -82,7 +85,7 @@ public class DAOFactory {
     public TimelineDAO getQueryableTimelineDAO() {
         TimelineSQLiteDAO dao = new TimelineSQLiteDAO(TimelineSQLiteDAO.Table.QUERYABLE);
         dao.setContext(context);
-        dao.setSQLiteOpenHelper(new Twitt4droidDatabaseHelper(context));
+        dao.setSQLiteOpenHelper(databaseHelper);
         return dao;
     }
 
@@ -90,7 +93,7 @@ public class DAOFactory {
     public ListTimelineDAO getListTimelineDAO() {
         ListSQLiteDAO dao = new ListSQLiteDAO();
         dao.setContext(context);
-        dao.setSQLiteOpenHelper(new Twitt4droidDatabaseHelper(context));
+        dao.setSQLiteOpenHelper(databaseHelper);
         return dao;
     }
 
@@ -98,7 +101,7 @@ public class DAOFactory {
     public UserDAO getUserDAO() {
         UserSQLiteDAO dao = new UserSQLiteDAO();
         dao.setContext(context);
-        dao.setSQLiteOpenHelper(new Twitt4droidDatabaseHelper(context));
+        dao.setSQLiteOpenHelper(databaseHelper);
         return dao;
     }
 }
\ No newline at end of file
@@ -49,6 +49,21 @@ public class ListSQLiteDAO extends SQLiteTemplate.DAOSupport implements ListTime
                 });
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Long fetchNewestIdByListId(Long listId) {
+        return getSQLiteTemplate().queryForSingleResult(
+                getSqlString(R.string.twitt4droid_fetch_list_newest_status_id_by_list_id_sql), 
+                new String[] { Objects.toString(listId) },
+                new SQLiteTemplate.RowMapper<Long>() {
+
+                    @Override
+                    public Long mapRow(Cursor cursor, int rowNum) {
+                        return cursor.isNull(0) ? null : cursor.getLong(0);
+                    }
+                });
+    }
+
     /** {@inheritDoc} */
     @Override
     public void save(final List<Status> statuses, final Long listId) {
@@ -83,4 +98,39 @@ public class ListSQLiteDAO extends SQLiteTemplate.DAOSupport implements ListTime
                 getSqlString(R.string.twitt4droid_delete_all_list_statuses_by_list_id_sql),
                 new String[] { Objects.toString(listId) });
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteAllButNewestByListId(final Long listId, final int count) {
+        getSQLiteTemplate().execute(
+                getSqlString(R.string.twitt4droid_delete_all_but_newest_list_statuses_by_list_id_sql),
+                new SQLiteTemplate.SQLiteStatementBinder() {
+
+                    @Override
+                    public void bindValues(SQLiteStatement statement) {
+                        statement.bindLong(1, listId);
+                        statement.bindLong(2, count);
+                    }
+                });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteAll() {
+        getSQLiteTemplate().execute(getSqlString(R.string.twitt4droid_delete_all_list_statuses_sql));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteOlderThan(final long timestamp) {
+        getSQLiteTemplate().execute(
+                getSqlString(R.string.twitt4droid_delete_list_statuses_older_than_sql),
+                new SQLiteTemplate.SQLiteStatementBinder() {
+
+                    @Override
+                    public void bindValues(SQLiteStatement statement) {
+                        statement.bindLong(1, timestamp);
+                    }
+                });
+    }
 }
\ No newline at end of file
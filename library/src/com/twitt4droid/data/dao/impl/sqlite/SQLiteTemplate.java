@@ -27,7 +27,9 @@ import java.util.Arrays;
 import java.util.List;
 
 /**
- * Simplifies the use of SQLite databases and helps to avoid common errors.
+ * Simplifies the use of SQLite databases and helps to avoid common errors. The database is
+ * shared by every DAO in the process, so it's never closed here: closing it would close it for
+ * the other threads too.
  * 
  * @author Daniel Pedraza-Arcega
  * @since version 1.0
@@ -82,7 +84,6 @@ class SQLiteTemplate {
             Log.e(TAG, "Couldn't complete query [" + sql + "] with args [" + Arrays.deepToString(args) + "]", ex);
         } finally {
             SQLiteUtils.close(cursor);
-            SQLiteUtils.close(database);
         }
         return object;
     }
@@ -125,7 +126,6 @@ class SQLiteTemplate {
             Log.e(TAG, "Couldn't complete query [" + sql + "] with args [" + Arrays.deepToString(args) + "]", ex);
         } finally {
             SQLiteUtils.close(cursor);
-            SQLiteUtils.close(database);
         }
         return list;
     }
@@ -149,7 +149,6 @@ class SQLiteTemplate {
         } finally {
             SQLiteUtils.close(statement);
             SQLiteUtils.endTransaction(database);
-            SQLiteUtils.close(database);
         }
     }
 
@@ -175,7 +174,6 @@ class SQLiteTemplate {
         } finally {
             SQLiteUtils.close(statement);
             SQLiteUtils.endTransaction(database);
-            SQLiteUtils.close(database);
         }
     }
 
@@ -201,7 +199,6 @@ class SQLiteTemplate {
         } finally {
             SQLiteUtils.close(statement);
             SQLiteUtils.endTransaction(database);
-            SQLiteUtils.close(database);
         }
     }
 
@@ -225,7 +222,6 @@ class SQLiteTemplate {
             Log.e(TAG, "Couldn't execute batch " + Arrays.deepToString(sqls), ex);
         } finally {
             SQLiteUtils.endTransaction(database);
-            SQLiteUtils.close(database);
         }
     }
 
@@ -253,7 +249,6 @@ class SQLiteTemplate {
         } finally {
             SQLiteUtils.close(statement);
             SQLiteUtils.endTransaction(database);
-            SQLiteUtils.close(database);
         }
     }
 
@@ -281,7 +276,6 @@ class SQLiteTemplate {
         } finally {
             SQLiteUtils.close(statement);
             SQLiteUtils.endTransaction(database);
-            SQLiteUtils.close(database);
         }
     }
 
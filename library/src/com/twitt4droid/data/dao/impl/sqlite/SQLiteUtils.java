@@ -84,21 +84,6 @@ class SQLiteUtils {
         }
     }
 
-    /**
-     * Closes the given database.
-     * 
-     * @param database a SQLiteDatabase.
-     */
-    static void close(SQLiteDatabase database) {
-        if (database != null) {
-            try {
-                database.close();
-            } catch (Exception ex) {
-                Log.e(TAG, "Couldn't close database correctly");
-            }
-        }
-    }
-
     /**
      * Closes the given cursor.
      * 
@@ -62,6 +62,20 @@ public class TimelineSQLiteDAO extends SQLiteTemplate.DAOSupport implements Time
                 });
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Long fetchNewestId() {
+        return getSQLiteTemplate().queryForSingleResult(
+                String.format(getSqlString(R.string.twitt4droid_fetch_newest_status_id_sql), tableName),
+                new SQLiteTemplate.RowMapper<Long>() {
+
+                    @Override
+                    public Long mapRow(Cursor cursor, int rowNum) {
+                        return cursor.isNull(0) ? null : cursor.getLong(0);
+                    }
+                });
+    }
+
     /** {@inheritDoc} */
     @Override
     public void save(final List<Status> statuses) {
@@ -94,4 +108,32 @@ public class TimelineSQLiteDAO extends SQLiteTemplate.DAOSupport implements Time
         getSQLiteTemplate().execute(
                 String.format(getSqlString(R.string.twitt4droid_delete_all_statuses_sql), tableName));
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteOlderThan(final long timestamp) {
+        getSQLiteTemplate().execute(
+                String.format(getSqlString(R.string.twitt4droid_delete_statuses_older_than_sql), tableName),
+                new SQLiteTemplate.SQLiteStatementBinder() {
+
+                    @Override
+                    public void bindValues(SQLiteStatement statement) {
+                        statement.bindLong(1, timestamp);
+                    }
+                });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteAllButNewest(final int count) {
+        getSQLiteTemplate().execute(
+                String.format(getSqlString(R.string.twitt4droid_delete_all_but_newest_statuses_sql), tableName),
+                new SQLiteTemplate.SQLiteStatementBinder() {
+
+                    @Override
+                    public void bindValues(SQLiteStatement statement) {
+                        statement.bindLong(1, count);
+                    }
+                });
+    }
 }
\ No newline at end of file
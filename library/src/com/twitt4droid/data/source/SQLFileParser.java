@@ -17,57 +17,181 @@ package com.twitt4droid.data.source;
 
 import android.util.Log;
 
-import com.twitt4droid.util.Strings;
-
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.regex.Pattern;
+import java.io.Reader;
+import java.nio.charset.Charset;
 
 /**
- * SQL file parser utility.
+ * Streaming SQL file parser. Statements are read one at a time in a single pass over the stream,
+ * so the whole file is never held in memory. Comments ({@code --} and {@code /* *}{@code /}) are
+ * dropped and semicolons inside quoted literals or identifiers don't end a statement. Use it
+ * like this:
+ * <pre>
+ * {@code
+ * SQLFileParser parser = new SQLFileParser(stream);
+ * try {
+ *     String statement;
+ *     while ((statement = parser.nextStatement()) != null) database.execSQL(statement);
+ * } finally {
+ *     parser.close();
+ * }
+ * }
+ * </pre>
  * 
  * @author Daniel Pedraza-Arcega
  * @since version 1.0
  */
-class SQLFileParser {
-    
+class SQLFileParser implements Closeable {
+
     private static final int END_OF_STREAM = -1;
+    private static final int BUFFER_SIZE = 4 * 1024;
     private static final String TAG = SQLFileParser.class.getSimpleName();
-    private static final String STATEMENT_DELIMITER = ";";
-    private static final Pattern COMMENT_PATTERN = Pattern.compile("(?:/\\*[^;]*?\\*/)|(?:--[^;]*?$)", Pattern.DOTALL | Pattern.MULTILINE);
+    private static final char STATEMENT_DELIMITER = ';';
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Reader reader;
+    private final char[] buffer;
+    private final StringBuilder statement;
+    private int position;
+    private int limit;
 
     /**
-     * Returns all the SQL statements contained in given stream.
-     *  
-     * @param stream an SQL file stream.
-     * @return SQL statements.
+     * Creates a SQLFileParser.
+     * 
+     * @param stream an UTF-8 SQL file stream.
      */
-    static String[] getSqlStatements(InputStream stream) {
-        BufferedReader reader = null;
+    SQLFileParser(InputStream stream) {
+        this.reader = new InputStreamReader(stream, UTF_8);
+        this.buffer = new char[BUFFER_SIZE];
+        this.statement = new StringBuilder();
+    }
+
+    /**
+     * Reads the next SQL statement.
+     * 
+     * @return the next SQL statement without its delimiter and comments, or {@code null} if
+     *         there are no more.
+     * @throws IOException if the stream couldn't be read.
+     */
+    String nextStatement() throws IOException {
+        statement.setLength(0);
+        int c;
+        while ((c = read()) != END_OF_STREAM) {
+            if (c == STATEMENT_DELIMITER) {
+                if (isBlank(statement)) statement.setLength(0);
+                else return statement.toString().trim();
+            } else if (c == '\'' || c == '"' || c == '`') readQuoted((char) c, (char) c);
+            else if (c == '[') readQuoted('[', ']');
+            else if (c == '-' && peek() == '-') skipLineComment();
+            else if (c == '/' && peek() == '*') skipBlockComment();
+            else statement.append((char) c);
+        }
+        return isBlank(statement) ? null : statement.toString().trim(); // last statement may lack the delimiter
+    }
+
+    /** Closes the stream. */
+    @Override
+    public void close() {
         try {
-            reader = new BufferedReader(new InputStreamReader(stream));
-            int r;
-            StringBuilder sb = new StringBuilder();
-            while ((r = reader.read()) != END_OF_STREAM) {
-                char character = (char) r;
-                sb.append(character);
-            }
-            return COMMENT_PATTERN.matcher(sb)
-                    .replaceAll(Strings.EMPTY)
-                    .split(STATEMENT_DELIMITER);
+            reader.close();
         } catch (IOException ex) {
-            Log.e(TAG, "Unable to parse SQL Statements", ex);
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException ex) {
-                    Log.e(TAG, "Unable to close stream", ex);
-                }
+            Log.e(TAG, "Unable to close stream", ex);
+        }
+    }
+
+    /**
+     * Appends a quoted literal or identifier, quotes included. A doubled quote inside it is an
+     * escaped quote, which reading it as the end of a literal followed by the start of another
+     * one already handles.
+     * 
+     * @param open the opening quote.
+     * @param close the closing quote.
+     * @throws IOException if the stream couldn't be read or ends inside the literal.
+     */
+    private void readQuoted(char open, char close) throws IOException {
+        statement.append(open);
+        int c;
+        while ((c = read()) != END_OF_STREAM) {
+            statement.append((char) c);
+            if (c == close) return;
+        }
+        throw new IOException("Unterminated " + open + " literal");
+    }
+
+    /**
+     * Skips a {@code --} comment up to the end of the line.
+     * 
+     * @throws IOException if the stream couldn't be read.
+     */
+    private void skipLineComment() throws IOException {
+        int c;
+        while ((c = read()) != END_OF_STREAM && c != '\n');
+        statement.append('\n');
+    }
+
+    /**
+     * Skips a {@code /* *}{@code /} comment.
+     * 
+     * @throws IOException if the stream couldn't be read or ends inside the comment.
+     */
+    private void skipBlockComment() throws IOException {
+        read(); // the *
+        int previous = 0;
+        int c;
+        while ((c = read()) != END_OF_STREAM) {
+            if (previous == '*' && c == '/') {
+                statement.append(' ');
+                return;
             }
+            previous = c;
+        }
+        throw new IOException("Unterminated comment");
+    }
+
+    /**
+     * @return the next character or {@link #END_OF_STREAM}.
+     * @throws IOException if the stream couldn't be read.
+     */
+    private int read() throws IOException {
+        if (position == limit && !fill()) return END_OF_STREAM;
+        return buffer[position++];
+    }
+
+    /**
+     * @return the next character, without consuming it, or {@link #END_OF_STREAM}.
+     * @throws IOException if the stream couldn't be read.
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) return END_OF_STREAM;
+        return buffer[position];
+    }
+
+    /**
+     * Reads the next chunk of the stream into the buffer.
+     * 
+     * @return {@code false} if the end of the stream was reached.
+     * @throws IOException if the stream couldn't be read.
+     */
+    private boolean fill() throws IOException {
+        int count;
+        while ((count = reader.read(buffer, 0, buffer.length)) == 0);
+        if (count == END_OF_STREAM) return false;
+        position = 0;
+        limit = count;
+        return true;
+    }
+
+    /**
+     * @param text some text.
+     * @return if the given text only has whitespace.
+     */
+    private static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) return false;
         }
-        return null;
+        return true;
     }
 }
\ No newline at end of file
@@ -16,26 +16,41 @@
 package com.twitt4droid.data.source;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
 import com.twitt4droid.R;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Creates and manages the twitt4droid SQLite database. 
+ * Creates and manages the twitt4droid SQLite database. On first use the database is copied from
+ * {@code res/raw/db_template}, an empty database built from {@code res/raw/db_schema.sql} by
+ * {@code tools/build_db_template.py}; if that fails it's created from the schema file instead.
  * 
  * @author Daniel Pedraza-Arcega
  * @since version 1.0
  */
 public class Twitt4droidDatabaseHelper extends SQLiteOpenHelper {
 
-    private static final int CURRENT_VERSION = 1;
+    private static final int CURRENT_VERSION = 2;
     private static final String TAG = Twitt4droidDatabaseHelper.class.getSimpleName();
     private static final String NAME = "twitt4droid";
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final Object TEMPLATE_LOCK = new Object();
+
+    private static volatile boolean isTemplateChecked;
+    private static Twitt4droidDatabaseHelper instance;
     
     private final int version;
     private final Context context;
@@ -45,42 +60,200 @@ public class Twitt4droidDatabaseHelper extends SQLiteOpenHelper {
      * 
      * @param context the application context.
      */
-    public Twitt4droidDatabaseHelper(Context context) {
+    private Twitt4droidDatabaseHelper(Context context) {
         super(context, NAME, null, CURRENT_VERSION);
         this.context = context;
         version = CURRENT_VERSION;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * Returns the process-wide Twitt4droidDatabaseHelper. Every DAO shares it, so all of them,
+     * in any thread, go through a single connection and SQLite serializes their writes instead
+     * of failing with "database is locked".
+     * 
+     * @param context the application context.
+     * @return the Twitt4droidDatabaseHelper.
+     */
+    public static synchronized Twitt4droidDatabaseHelper getInstance(Context context) {
+        if (instance == null) instance = new Twitt4droidDatabaseHelper(context.getApplicationContext());
+        return instance;
+    }
+
+    /**
+     * {@inheritDoc} SQLiteOpenHelper already runs this in a transaction, so the schema is created
+     * completely or not at all.
+     */
     @Override
     public void onCreate(SQLiteDatabase database) {
         Log.v(TAG, "Creating database version " + version + "...");
-        InputStream fileStream = context.getResources().openRawResource(R.raw.db_schema);
-        String[] statements = SQLFileParser.getSqlStatements(fileStream);
-        for (String statement : statements) database.execSQL(statement);
-        if (fileStream != null) {
-            try {
-                fileStream.close();
-            } catch (IOException ex) {
-                Log.e(TAG, "Couldn't close stream", ex);
-            }
+        long start = System.nanoTime();
+        SQLFileParser parser = new SQLFileParser(context.getResources().openRawResource(R.raw.db_schema));
+        try {
+            String statement;
+            while ((statement = parser.nextStatement()) != null) database.execSQL(statement);
+            Log.v(TAG, "Database created from schema in " + (System.nanoTime() - start) / 1000000L + "ms");
+        } catch (IOException ex) {
+            Log.e(TAG, "Couldn't read database schema", ex);
+            throw new SQLException("Couldn't read database schema: " + ex.getMessage());
+        } finally {
+            parser.close();
         }
     }
 
     /** {@inheritDoc} */
     @Override
+    public synchronized SQLiteDatabase getWritableDatabase() {
+        installTemplateIfNeeded(context);
+        return super.getWritableDatabase();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized SQLiteDatabase getReadableDatabase() {
+        installTemplateIfNeeded(context);
+        return super.getReadableDatabase();
+    }
+
+    /**
+     * {@inheritDoc} Everything stored is a cache, so the tables of the old version are dropped
+     * and the schema is created again. The database being upgraded is already open, so its
+     * tables are dropped in place instead of deleting the file.
+     */
+    @Override
     public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
         Log.v(TAG, "Destroying version " + oldVersion + "...");
-        destroyDb(context);
+        recreateTables(database);
+    }
+
+    /**
+     * Drops every table of the given database and creates the schema again.
+     * 
+     * @param database an open database.
+     */
+    private void recreateTables(SQLiteDatabase database) {
+        List<String> tables = new ArrayList<>();
+        Cursor cursor = database.rawQuery(context.getString(R.string.twitt4droid_fetch_table_names_sql), null);
+        try {
+            while (cursor.moveToNext()) tables.add(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+        for (String table : tables) database.execSQL(String.format(context.getString(R.string.twitt4droid_drop_table_sql), table));
         onCreate(database);
     }
 
     /**
-     * Destroys the twitt4droid database.
+     * Destroys the twitt4droid database. When the shared helper exists its tables are dropped and
+     * created again in a transaction through the shared connection, which stays open, so other
+     * threads, like LiveTimeline or TimelineSyncer, wait for it instead of failing on a closed
+     * database. Otherwise nobody is using the database and its file is deleted.
      * 
      * @param context the application context.
      */
     public static void destroyDb(Context context) {
-        context.deleteDatabase(NAME);
+        Twitt4droidDatabaseHelper helper;
+        synchronized (Twitt4droidDatabaseHelper.class) {
+            helper = instance;
+            if (helper == null) {
+                deleteDb(context);
+                return;
+            }
+        }
+        Log.v(TAG, "Destroying database...");
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            helper.recreateTables(database);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Closes the shared connection and deletes the database file, so the next use opens it for
+     * the first time. Only safe when no other thread is using the database; package-private for
+     * FirstOpenBenchmark.
+     * 
+     * @param context the application context.
+     */
+    static void closeAndDeleteDb(Context context) {
+        Twitt4droidDatabaseHelper helper;
+        synchronized (Twitt4droidDatabaseHelper.class) {
+            helper = instance;
+        }
+        if (helper == null) deleteDb(context);
+        else {
+            synchronized (helper) { // same lock order as getWritableDatabase: helper, then template
+                helper.close();
+                deleteDb(context);
+            }
+        }
+    }
+
+    /**
+     * Deletes the database file and forgets the template was checked.
+     * 
+     * @param context the application context.
+     */
+    private static void deleteDb(Context context) {
+        synchronized (TEMPLATE_LOCK) {
+            context.deleteDatabase(NAME);
+            isTemplateChecked = false;
+        }
+    }
+
+    /**
+     * Copies the database template into place unless the database already exists. Only the
+     * first call in the process touches the disk.
+     * 
+     * @param context the application context.
+     */
+    private static void installTemplateIfNeeded(Context context) {
+        if (isTemplateChecked) return;
+        synchronized (TEMPLATE_LOCK) {
+            if (isTemplateChecked) return;
+            isTemplateChecked = true;
+            File databaseFile = context.getDatabasePath(NAME);
+            if (databaseFile.exists()) return;
+            long start = System.nanoTime();
+            File tempFile = new File(databaseFile.getPath() + ".tmp");
+            InputStream in = null;
+            OutputStream out = null;
+            try {
+                File databaseDir = databaseFile.getParentFile();
+                if (!databaseDir.exists() && !databaseDir.mkdirs()) throw new IOException("Couldn't create " + databaseDir);
+                in = context.getResources().openRawResource(R.raw.db_template);
+                out = new FileOutputStream(tempFile);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = in.read(buffer)) != -1) out.write(buffer, 0, count);
+                out.close();
+                out = null;
+                if (!tempFile.renameTo(databaseFile)) throw new IOException("Couldn't rename " + tempFile);
+                Log.v(TAG, "Database template installed in " + (System.nanoTime() - start) / 1000000L + "ms");
+            } catch (IOException ex) {
+                Log.e(TAG, "Couldn't install database template, it will be created from schema", ex);
+                tempFile.delete();
+            } finally {
+                closeQuietly(in);
+                closeQuietly(out);
+            }
+        }
+    }
+
+    /**
+     * Closes the given stream logging any error.
+     * 
+     * @param stream a stream or {@code null}.
+     */
+    private static void closeQuietly(Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ex) {
+                Log.e(TAG, "Couldn't close stream", ex);
+            }
+        }
     }
 }
\ No newline at end of file
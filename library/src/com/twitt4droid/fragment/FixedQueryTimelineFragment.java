@@ -18,6 +18,7 @@ package com.twitt4droid.fragment;
 import android.os.Bundle;
 
 import com.twitt4droid.R;
+import com.twitt4droid.RateLimitGovernor;
 import com.twitt4droid.data.dao.TimelineDAO;
 import com.twitt4droid.data.dao.impl.DAOFactory;
 
@@ -120,7 +121,7 @@ public class FixedQueryTimelineFragment extends TimelineFragment {
          * @param query the search query.
          */
         protected QueryStatusesLoaderTask(TimelineDAO timelineDao, String query) {
-            super(timelineDao);
+            super(timelineDao, RateLimitGovernor.SEARCH);
             this.query = query;
         }
 
@@ -130,8 +131,8 @@ public class FixedQueryTimelineFragment extends TimelineFragment {
             TimelineDAO timelineDAO = (TimelineDAO) getDAO();
             List<twitter4j.Status> statuses = null;
             if (isConnectedToInternet()) {
-                statuses = getTwitter().search(new Query(query)).getTweets();
-                // TODO: update statuses instead of deleting all previous statuses and save new ones.
+                statuses = record(getTwitter().search(new Query(query))).getTweets();
+                // the table only holds the results of the last search, so they are replaced
                 timelineDAO.deleteAll();
                 timelineDAO.save(statuses);
             } else statuses = timelineDAO.fetchList();
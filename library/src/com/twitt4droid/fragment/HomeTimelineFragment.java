@@ -15,11 +15,16 @@
  */
 package com.twitt4droid.fragment;
 
+import android.content.Context;
 import android.os.Bundle;
 
 import com.twitt4droid.R;
+import com.twitt4droid.RateLimitGovernor;
+import com.twitt4droid.Twitt4droid;
 import com.twitt4droid.data.dao.TimelineDAO;
 import com.twitt4droid.data.dao.impl.DAOFactory;
+import com.twitt4droid.live.LiveTimeline;
+import com.twitt4droid.live.PollingSource;
 
 import twitter4j.TwitterException;
 
@@ -41,9 +46,21 @@ public class HomeTimelineFragment extends TimelineFragment {
      * @return a new HomeTimelineFragment.
      */
     public static HomeTimelineFragment newInstance(boolean enableDarkTheme) {
+        return newInstance(enableDarkTheme, false);
+    }
+
+    /**
+     * Creates a HomeTimelineFragment.
+     * 
+     * @param enableDarkTheme if the dark theme is enabled.
+     * @param enableLiveMode if the timeline is polled for new statuses while it's visible.
+     * @return a new HomeTimelineFragment.
+     */
+    public static HomeTimelineFragment newInstance(boolean enableDarkTheme, boolean enableLiveMode) {
         HomeTimelineFragment fragment = new HomeTimelineFragment();
         Bundle args = new Bundle();
         args.putBoolean(ENABLE_DARK_THEME_ARG, enableDarkTheme);
+        args.putBoolean(ENABLE_LIVE_MODE_ARG, enableLiveMode);
         fragment.setArguments(args);
         return fragment;
     }
@@ -63,6 +80,13 @@ public class HomeTimelineFragment extends TimelineFragment {
         return new HomeStatusesLoaderTask(new DAOFactory(getActivity().getApplicationContext()).getHomeTimelineDAO());
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected LiveTimeline initLiveTimeline() {
+        Context context = getActivity().getApplicationContext();
+        return new LiveTimeline(PollingSource.newHomeSource(Twitt4droid.getTwitter(context)), new DAOFactory(context).getHomeTimelineDAO());
+    }
+
     /** {@inheritDoc} */
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
@@ -102,21 +126,25 @@ public class HomeTimelineFragment extends TimelineFragment {
          * @param timelineDao a TimelineDAO.
          */
         protected HomeStatusesLoaderTask(TimelineDAO timelineDao) {
-            super(timelineDao);
+            super(timelineDao, RateLimitGovernor.HOME_TIMELINE);
         }
 
         /** {@inheritDoc} */
         @Override
         protected List<twitter4j.Status> loadTweetsInBackground() throws TwitterException {
             TimelineDAO timelineDAO = (TimelineDAO) getDAO();
-            List<twitter4j.Status> statuses = null;
             if (isConnectedToInternet()) {
-                statuses = getTwitter().getHomeTimeline();
-                // TODO: update statuses instead of deleting all previous statuses and save new ones.
-                timelineDAO.deleteAll();
-                timelineDAO.save(statuses);
-            } else statuses = timelineDAO.fetchList();
-            return statuses;
+                timelineDAO.save(record(getTwitter().getHomeTimeline()));
+                timelineDAO.deleteAllButNewest(TimelineDAO.MAX_CACHED_STATUSES);
+            }
+            return loadCachedTweetsInBackground(); // the new statuses merged with the cached ones
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected List<twitter4j.Status> loadCachedTweetsInBackground() {
+            TimelineDAO timelineDAO = (TimelineDAO) getDAO();
+            return timelineDAO.fetchList();
         }
     }
 }
\ No newline at end of file
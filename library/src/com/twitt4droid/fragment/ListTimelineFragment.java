@@ -18,7 +18,9 @@ package com.twitt4droid.fragment;
 import android.os.Bundle;
 
 import com.twitt4droid.R;
+import com.twitt4droid.RateLimitGovernor;
 import com.twitt4droid.data.dao.ListTimelineDAO;
+import com.twitt4droid.data.dao.TimelineDAO;
 import com.twitt4droid.data.dao.impl.DAOFactory;
 
 import twitter4j.Paging;
@@ -126,7 +128,7 @@ public class ListTimelineFragment extends TimelineFragment {
          * @param listId the list id.
          */
         protected ListStatusesLoaderTask(ListTimelineDAO timelineDao, long listId) {
-            super(timelineDao);
+            super(timelineDao, RateLimitGovernor.LIST_STATUSES);
             this.listId = listId;
         }
 
@@ -134,14 +136,18 @@ public class ListTimelineFragment extends TimelineFragment {
         @Override
         protected List<twitter4j.Status> loadTweetsInBackground() throws TwitterException {
             ListTimelineDAO timelineDAO = (ListTimelineDAO) getDAO();
-            List<twitter4j.Status> statuses = null;
             if (isConnectedToInternet()) {
-                statuses = getTwitter().getUserListStatuses(listId, new Paging(1));
-                // TODO: update statuses instead of deleting all previous statuses and save new ones.
-                timelineDAO.deleteAllByListId(listId);
-                timelineDAO.save(statuses, listId);
-            } else statuses = timelineDAO.fetchListByListId(listId);
-            return statuses;
+                timelineDAO.save(record(getTwitter().getUserListStatuses(listId, new Paging(1))), listId);
+                timelineDAO.deleteAllButNewestByListId(listId, TimelineDAO.MAX_CACHED_STATUSES);
+            }
+            return loadCachedTweetsInBackground(); // the new statuses merged with the cached ones
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected List<twitter4j.Status> loadCachedTweetsInBackground() {
+            ListTimelineDAO timelineDAO = (ListTimelineDAO) getDAO();
+            return timelineDAO.fetchListByListId(listId);
         }
     }
 }
\ No newline at end of file
@@ -15,11 +15,16 @@
  */
 package com.twitt4droid.fragment;
 
+import android.content.Context;
 import android.os.Bundle;
 
 import com.twitt4droid.R;
+import com.twitt4droid.RateLimitGovernor;
+import com.twitt4droid.Twitt4droid;
 import com.twitt4droid.data.dao.TimelineDAO;
 import com.twitt4droid.data.dao.impl.DAOFactory;
+import com.twitt4droid.live.LiveTimeline;
+import com.twitt4droid.live.PollingSource;
 
 import twitter4j.TwitterException;
 
@@ -41,9 +46,21 @@ public class MentionsTimelineFragment extends TimelineFragment {
      * @return a new MentionsTimelineFragment.
      */
     public static MentionsTimelineFragment newInstance(boolean enableDarkTheme) {
+        return newInstance(enableDarkTheme, false);
+    }
+
+    /**
+     * Creates a MentionsTimelineFragment.
+     * 
+     * @param enableDarkTheme if the dark theme is enabled.
+     * @param enableLiveMode if the timeline is polled for new statuses while it's visible.
+     * @return a new MentionsTimelineFragment.
+     */
+    public static MentionsTimelineFragment newInstance(boolean enableDarkTheme, boolean enableLiveMode) {
         MentionsTimelineFragment fragment = new MentionsTimelineFragment();
         Bundle args = new Bundle();
         args.putBoolean(ENABLE_DARK_THEME_ARG, enableDarkTheme);
+        args.putBoolean(ENABLE_LIVE_MODE_ARG, enableLiveMode);
         fragment.setArguments(args);
         return fragment;
     }
@@ -63,6 +80,13 @@ public class MentionsTimelineFragment extends TimelineFragment {
         return new MentionsStatusesLoaderTask(new DAOFactory(getActivity().getApplicationContext()).getMentionsTimelineDAO());
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected LiveTimeline initLiveTimeline() {
+        Context context = getActivity().getApplicationContext();
+        return new LiveTimeline(PollingSource.newMentionsSource(Twitt4droid.getTwitter(context)), new DAOFactory(context).getMentionsTimelineDAO());
+    }
+
     /** {@inheritDoc} */
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
@@ -102,21 +126,25 @@ public class MentionsTimelineFragment extends TimelineFragment {
          * @param timelineDao a TimelineDAO.
          */
         protected MentionsStatusesLoaderTask(TimelineDAO timelineDao) {
-            super(timelineDao);
+            super(timelineDao, RateLimitGovernor.MENTIONS_TIMELINE);
         }
 
         /** {@inheritDoc} */
         @Override
         protected List<twitter4j.Status> loadTweetsInBackground() throws TwitterException {
             TimelineDAO timelineDAO = (TimelineDAO) getDAO();
-            List<twitter4j.Status> statuses = null;
             if (isConnectedToInternet()) {
-                statuses = getTwitter().getMentionsTimeline();
-                // TODO: update statuses instead of deleting all previous statuses and save new ones.
-                timelineDAO.deleteAll();
-                timelineDAO.save(statuses);
-            } else statuses = timelineDAO.fetchList();
-            return statuses;
+                timelineDAO.save(record(getTwitter().getMentionsTimeline()));
+                timelineDAO.deleteAllButNewest(TimelineDAO.MAX_CACHED_STATUSES);
+            }
+            return loadCachedTweetsInBackground(); // the new statuses merged with the cached ones
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected List<twitter4j.Status> loadCachedTweetsInBackground() {
+            TimelineDAO timelineDAO = (TimelineDAO) getDAO();
+            return timelineDAO.fetchList();
         }
     }
 }
\ No newline at end of file
@@ -27,6 +27,7 @@ import android.widget.EditText;
 import android.widget.TextView;
 
 import com.twitt4droid.R;
+import com.twitt4droid.RateLimitGovernor;
 import com.twitt4droid.Resources;
 import com.twitt4droid.data.dao.TimelineDAO;
 import com.twitt4droid.data.dao.impl.DAOFactory;
@@ -141,10 +142,9 @@ public class QueryableTimelineFragment extends TimelineFragment {
     @Override
     public void onPause() {
         super.onPause();
-        Resources.getPreferences(getActivity())
+        Resources.apply(Resources.getPreferences(getActivity())
             .edit()
-            .putString(LAST_QUERY_KEY, lastQuery)
-            .commit();
+            .putString(LAST_QUERY_KEY, lastQuery));
     }
 
     /** {@inheritDoc} */
@@ -189,7 +189,7 @@ public class QueryableTimelineFragment extends TimelineFragment {
          * @param query the search query.
          */
         protected QueryStatusesLoaderTask(TimelineDAO timelineDao, String query) {
-            super(timelineDao);
+            super(timelineDao, RateLimitGovernor.SEARCH);
             this.query = query;
         }
 
@@ -199,8 +199,8 @@ public class QueryableTimelineFragment extends TimelineFragment {
             TimelineDAO timelineDAO = (TimelineDAO) getDAO();
             List<twitter4j.Status> statuses = null;
             if (isConnectedToInternet()) {
-                statuses = getTwitter().search(new Query(query)).getTweets();
-                // TODO: update statuses instead of deleting all previous statuses and save new ones.
+                statuses = record(getTwitter().search(new Query(query))).getTweets();
+                // the table only holds the results of the last search, so they are replaced
                 timelineDAO.deleteAll();
                 timelineDAO.save(statuses);
             } else statuses = timelineDAO.fetchList();
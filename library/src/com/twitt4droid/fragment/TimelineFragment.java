@@ -15,27 +15,36 @@
  */
 package com.twitt4droid.fragment;
 
+import android.annotation.TargetApi;
+import android.database.DataSetObserver;
 import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Trace;
 import android.support.v4.app.Fragment;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import com.twitt4droid.R;
+import com.twitt4droid.RateLimitGovernor;
 import com.twitt4droid.Resources;
 import com.twitt4droid.Twitt4droid;
 import com.twitt4droid.data.dao.GenericDAO;
+import com.twitt4droid.live.LiveTimeline;
+import com.twitt4droid.widget.ImagePrefetcher;
 import com.twitt4droid.widget.TweetAdapter;
 
 import twitter4j.Status;
 import twitter4j.Twitter;
 import twitter4j.TwitterException;
+import twitter4j.TwitterResponse;
 
 import java.util.List;
 
@@ -48,13 +57,22 @@ import java.util.List;
 public abstract class TimelineFragment extends Fragment {
     
     protected static final String ENABLE_DARK_THEME_ARG = "ENABLE_DARK_THEME";
+    protected static final String ENABLE_LIVE_MODE_ARG = "ENABLE_LIVE_MODE";
 
     private static final String TAG = TimelineFragment.class.getSimpleName();
+    private static final int PREFETCH_ROW_COUNT = 10;
 
     private SwipeRefreshLayout swipeLayout;
     private ListView tweetListView;
     private TweetAdapter listAdapter;
+    private ImagePrefetcher imagePrefetcher;
     private ProgressBar progressBar;
+    private long createdAtNanos;
+    private boolean isFirstTweetRendered;
+    private String firstTweetSource;
+    private DataSetObserver firstTweetObserver;
+    private Runnable deferredReload;
+    private LiveTimeline liveTimeline;
 
     /** @return the title string resource. */
     public abstract int getResourceTitle();
@@ -72,11 +90,26 @@ public abstract class TimelineFragment extends Fragment {
      */
     protected abstract StatusesLoaderTask initStatusesLoaderTask();
 
+    /**
+     * Initializes the LiveTimeline that polls this timeline for new statuses while it's visible,
+     * if the live mode is enabled.
+     * 
+     * @return a new LiveTimeline or {@code null} if this timeline has no live mode.
+     */
+    protected LiveTimeline initLiveTimeline() {
+        return null;
+    }
+
     /** @return if the dark theme is enabled. */
     protected boolean isDarkThemeEnabled() {
         return getArguments().getBoolean(ENABLE_DARK_THEME_ARG, false);
     }
 
+    /** @return if the live mode is enabled. */
+    protected boolean isLiveModeEnabled() {
+        return getArguments().getBoolean(ENABLE_LIVE_MODE_ARG, false);
+    }
+
     /** {@inheritDoc} */
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -91,12 +124,16 @@ public abstract class TimelineFragment extends Fragment {
      * @param layout the root view.
      */
     protected void setUpLayout(View layout) {
+        createdAtNanos = System.nanoTime();
+        isFirstTweetRendered = false;
         swipeLayout = (SwipeRefreshLayout) layout.findViewById(R.id.swipe_container);
         tweetListView = (ListView) layout.findViewById(R.id.tweets_list);
         progressBar = (ProgressBar) layout.findViewById(R.id.tweets_progress_bar);
         listAdapter = new TweetAdapter(getActivity());
         listAdapter.setUseDarkTheme(isDarkThemeEnabled());
         tweetListView.setAdapter(listAdapter);
+        imagePrefetcher = new ImagePrefetcher(getActivity(), listAdapter, PREFETCH_ROW_COUNT);
+        tweetListView.setOnScrollListener(imagePrefetcher);
         swipeLayout.setColorSchemeResources(R.color.twitt4droid_primary_color, 
                 R.color.twitt4droid_secundary_color_1,
                 R.color.twitt4droid_secundary_color_2,
@@ -110,47 +147,234 @@ public abstract class TimelineFragment extends Fragment {
         });
     }
 
-    /** Reloads the Twitter feed when connected to internet. */
+    /** {@inheritDoc} */
+    @Override
+    public void onResume() {
+        super.onResume();
+        if (isLiveModeEnabled()) {
+            if (liveTimeline == null) {
+                liveTimeline = initLiveTimeline();
+                if (liveTimeline != null) {
+                    liveTimeline.setOnStatusesListener(new LiveTimeline.OnStatusesListener() {
+
+                        @Override
+                        public void onStatuses(List<Status> statuses) {
+                            if (listAdapter != null && getView() != null) listAdapter.prepend(statuses, tweetListView);
+                        }
+                    });
+                }
+            }
+            if (liveTimeline != null) liveTimeline.start();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onPause() {
+        if (liveTimeline != null) liveTimeline.stop();
+        super.onPause();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onDestroyView() {
+        if (deferredReload != null) swipeLayout.removeCallbacks(deferredReload);
+        deferredReload = null;
+        if (firstTweetObserver != null) listAdapter.unregisterDataSetObserver(firstTweetObserver);
+        firstTweetObserver = null;
+        super.onDestroyView();
+    }
+
+    /**
+     * Reloads the Twitter feed when connected to internet. If the rate limit of the timeline is
+     * exhausted the reload is deferred until the limit resets.
+     */
     protected void reloadTweetsIfPossible() {
-        if (Resources.isConnectedToInternet(getActivity())) initStatusesLoaderTask().execute();
-        else {
+        if (!Resources.isConnectedToInternet(getActivity())) {
             swipeLayout.setRefreshing(false);
             Toast.makeText(getActivity().getApplicationContext(), 
                     R.string.twitt4droid_is_offline_messege, 
                     Toast.LENGTH_SHORT).show();
+            return;
+        }
+        StatusesLoaderTask task = initStatusesLoaderTask();
+        if (task.isRateLimited()) {
+            swipeLayout.setRefreshing(false);
+            showRateLimitedMessage(task.getEndpoint());
+            deferReload(task.getEndpoint());
+        } else task.execute();
+    }
+
+    /**
+     * Reloads the timeline once the rate limit window of the given endpoint resets, replacing
+     * any reload already deferred.
+     * 
+     * @param endpoint the rate limited endpoint.
+     */
+    private void deferReload(String endpoint) {
+        if (deferredReload != null) swipeLayout.removeCallbacks(deferredReload);
+        deferredReload = new Runnable() {
+
+            @Override
+            public void run() {
+                deferredReload = null;
+                if (getActivity() != null) {
+                    swipeLayout.setRefreshing(true);
+                    reloadTweetsIfPossible();
+                }
+            }
+        };
+        swipeLayout.postDelayed(deferredReload, RateLimitGovernor.getSecondsUntilReset(endpoint) * 1000L);
+    }
+
+    /**
+     * Shows how long until the rate limit window of the given endpoint resets.
+     * 
+     * @param endpoint the rate limited endpoint.
+     */
+    private void showRateLimitedMessage(String endpoint) {
+        int minutes = Math.max(1, (RateLimitGovernor.getSecondsUntilReset(endpoint) + 59) / 60);
+        Toast.makeText(getActivity().getApplicationContext(),
+                getString(R.string.twitt4droid_rate_limited_message, minutes),
+                Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Shows the given statuses, merging them with the ones already shown.
+     * 
+     * @param statuses the statuses to show.
+     * @param source where the statuses come from, for the startup trace.
+     */
+    private void showTweets(List<Status> statuses, String source) {
+        progressBar.setVisibility(View.GONE);
+        swipeLayout.setVisibility(View.VISIBLE);
+        tweetListView.setVisibility(View.VISIBLE);
+        imagePrefetcher.cancel();
+        if (!isFirstTweetRendered) watchFirstTweet(source);
+        listAdapter.set(statuses, tweetListView);
+    }
+
+    /**
+     * Waits for the adapter to apply its first statuses, which {@link TweetAdapter#set(List, ListView)}
+     * does asynchronously, and marks the first tweet rendered on the next frame drawn after that.
+     * 
+     * @param source where the statuses being set come from.
+     */
+    private void watchFirstTweet(String source) {
+        firstTweetSource = source;
+        if (firstTweetObserver != null) return;
+        firstTweetObserver = new DataSetObserver() {
+
+            @Override
+            public void onChanged() {
+                if (listAdapter.getCount() == 0 || isFirstTweetRendered) return;
+                isFirstTweetRendered = true;
+                listAdapter.unregisterDataSetObserver(this);
+                firstTweetObserver = null;
+                final String appliedSource = firstTweetSource;
+                final ViewTreeObserver viewTreeObserver = tweetListView.getViewTreeObserver();
+                viewTreeObserver.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+
+                    @Override
+                    public boolean onPreDraw() {
+                        if (viewTreeObserver.isAlive()) viewTreeObserver.removeOnPreDrawListener(this);
+                        else tweetListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        markFirstTweetRendered(appliedSource);
+                        return true;
+                    }
+                });
+            }
+        };
+        listAdapter.registerDataSetObserver(firstTweetObserver);
+    }
+
+    /**
+     * Logs the time since the layout was set up until the first tweets were drawn and, on
+     * JELLY_BEAN_MR2+, leaves a marker in systrace.
+     * 
+     * @param source where the first statuses came from.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void markFirstTweetRendered(String source) {
+        Log.i(TAG, getClass().getSimpleName() + " time to first tweet: " + (System.nanoTime() - createdAtNanos) / 1000000L + "ms from " + source);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection("twitt4droid:firstTweet:" + source);
+            Trace.endSection();
         }
     }
 
     /**
-     * Loads twitter statuses asynchronously.
+     * Loads twitter statuses asynchronously. When connected to internet the cached statuses, if
+     * any, are shown first while the fresh ones are downloaded. When the rate limit of the
+     * endpoint is exhausted, before or during the request, the cached statuses are loaded
+     * instead, as if it were offline.
      * 
      * @author Daniel Pedraza-Arcega
      * @since version 1.0
      */
-    protected abstract class StatusesLoaderTask extends AsyncTask<Void, Void, List<Status>> {
+    protected abstract class StatusesLoaderTask extends AsyncTask<Void, List<Status>, List<Status>> {
 
-        private final boolean isConnectedToInternet;
+        private final String endpoint;
         private final GenericDAO<?, ?> dao;
         private final Twitter twitter;
 
+        private volatile boolean isRateLimited;
+        private boolean isConnectedToInternet;
         private TwitterException error;
 
         /**
-         * Creates a StatusesLoaderTask.
+         * Creates a StatusesLoaderTask whose requests aren't governed by rate limits.
          * 
          * @param dao any GenericDAO.
          */
         protected StatusesLoaderTask(GenericDAO<?, ?> dao) {
+            this(dao, null);
+        }
+
+        /**
+         * Creates a StatusesLoaderTask.
+         * 
+         * @param dao any GenericDAO.
+         * @param endpoint the endpoint, one of the {@link RateLimitGovernor} constants, whose rate
+         *        limit governs the requests.
+         */
+        protected StatusesLoaderTask(GenericDAO<?, ?> dao, String endpoint) {
             this.dao = dao;
-            isConnectedToInternet = Resources.isConnectedToInternet(getActivity());
+            this.endpoint = endpoint;
+            isRateLimited = !RateLimitGovernor.canRequest(endpoint);
+            isConnectedToInternet = Resources.isConnectedToInternet(getActivity()) && !isRateLimited;
             twitter = Twitt4droid.getTwitter(getActivity());
         }
 
-        /** @return if is connected to internet. */
+        /**
+         * @return if is connected to internet and the rate limit allows the request; otherwise
+         *         the statuses should be loaded from the cache.
+         */
         protected boolean isConnectedToInternet() {
             return isConnectedToInternet;
         }
 
+        /** @return if the rate limit of the endpoint is exhausted. */
+        protected boolean isRateLimited() {
+            return isRateLimited;
+        }
+
+        /** @return the endpoint or {@code null} if the requests aren't governed. */
+        protected String getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * Records the rate limit status of the given response.
+         * 
+         * @param response a response of the endpoint.
+         * @return the given response.
+         */
+        protected <T extends TwitterResponse> T record(T response) {
+            RateLimitGovernor.record(endpoint, response);
+            return response;
+        }
+
         /** @return a GenericDAO. */
         protected GenericDAO<?, ?> getDAO() {
             return dao;
@@ -168,23 +392,55 @@ public abstract class TimelineFragment extends Fragment {
          */
         protected abstract List<twitter4j.Status> loadTweetsInBackground() throws TwitterException;
 
+        /**
+         * Loads the cached statuses in background, to show them while the fresh ones are
+         * downloaded. Timelines whose cache may belong to a different query shouldn't override it.
+         * 
+         * @return the cached statuses or {@code null} if there are none.
+         */
+        protected List<twitter4j.Status> loadCachedTweetsInBackground() {
+            return null;
+        }
+
         /** {@inheritDoc} */
         @Override
+        @SuppressWarnings("unchecked")
         protected List<twitter4j.Status> doInBackground(Void... params) {
             try {
+                if (isConnectedToInternet) {
+                    List<twitter4j.Status> cached = loadCachedTweetsInBackground();
+                    if (cached != null && !cached.isEmpty()) publishProgress(cached);
+                }
                 return loadTweetsInBackground();
             } catch (TwitterException ex) {
+                if (ex.exceededRateLimitation() && endpoint != null) {
+                    RateLimitGovernor.recordExceeded(endpoint, ex);
+                    isRateLimited = true;
+                    isConnectedToInternet = false;
+                    return loadCachedTweetsInBackground();
+                }
                 error = ex;
                 return null;
             }
         }
 
+        /** {@inheritDoc} */
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void onProgressUpdate(List<twitter4j.Status>... cached) {
+            if (getActivity() != null) {
+                showTweets(cached[0], "cache");
+                swipeLayout.setRefreshing(true);
+            }
+        }
+
         /** {@inheritDoc} */
         @Override
         public void onPostExecute(List<twitter4j.Status> data) {
             if (getActivity() != null) {
                 if (error != null) {
                     Log.e(TAG, "Twitter error", error);
+                    swipeLayout.setRefreshing(false);
                     Toast.makeText(getActivity().getApplicationContext(), 
                             R.string.twitt4droid_error_message, 
                             Toast.LENGTH_LONG)
@@ -195,8 +451,9 @@ public abstract class TimelineFragment extends Fragment {
                     progressBar.setVisibility(View.GONE);
                     swipeLayout.setVisibility(View.VISIBLE);
                     tweetListView.setVisibility(View.VISIBLE);
-                    if (data != null && !data.isEmpty()) listAdapter.set(data);
-                    else {
+                    if (isRateLimited) showRateLimitedMessage(endpoint);
+                    if (data != null && !data.isEmpty()) showTweets(data, isConnectedToInternet ? "network" : "cache");
+                    else if (!isRateLimited) {
                         Toast.makeText(getActivity().getApplicationContext(),
                                 R.string.twitt4droid_no_tweets_found_message,
                                 Toast.LENGTH_SHORT)
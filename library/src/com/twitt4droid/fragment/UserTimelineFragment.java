@@ -26,8 +26,10 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.twitt4droid.R;
+import com.twitt4droid.RateLimitGovernor;
 import com.twitt4droid.Resources;
 import com.twitt4droid.Twitt4droid;
+import com.twitt4droid.data.dao.TimelineDAO;
 import com.twitt4droid.data.dao.UserDAO;
 import com.twitt4droid.data.dao.UserTimelineDAO;
 import com.twitt4droid.data.dao.impl.DAOFactory;
@@ -259,7 +261,7 @@ public class UserTimelineFragment extends TimelineFragment {
          * @param username a username.
          */
         protected UserStatusesLoaderTask(UserTimelineDAO timelineDao, String username) {
-            super(timelineDao);
+            super(timelineDao, RateLimitGovernor.USER_TIMELINE);
             this.username = username;
         }
 
@@ -267,14 +269,18 @@ public class UserTimelineFragment extends TimelineFragment {
         @Override
         protected List<twitter4j.Status> loadTweetsInBackground() throws TwitterException {
             UserTimelineDAO timelineDAO = (UserTimelineDAO) getDAO();
-            List<twitter4j.Status> statuses = null;
             if (isConnectedToInternet()) {
-                statuses = getTwitter().getUserTimeline(username);
-                // TODO: update statuses instead of deleting all previous statuses and save new ones.
-                timelineDAO.deleteAll();
-                timelineDAO.save(statuses);
-            } else statuses = timelineDAO.fetchListByScreenName(username);
-            return statuses;
+                timelineDAO.save(record(getTwitter().getUserTimeline(username)));
+                timelineDAO.deleteAllButNewest(TimelineDAO.MAX_CACHED_STATUSES);
+            }
+            return loadCachedTweetsInBackground(); // the new statuses merged with the cached ones
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected List<twitter4j.Status> loadCachedTweetsInBackground() {
+            UserTimelineDAO timelineDAO = (UserTimelineDAO) getDAO();
+            return timelineDAO.fetchListByScreenName(username);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.live;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.twitt4droid.RateLimitGovernor;
+import com.twitt4droid.data.dao.TimelineDAO;
+
+import twitter4j.Status;
+import twitter4j.TwitterException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a timeline up to date while it's visible. This is not a streaming connection: the
+ * {@link Source}, usually a {@link PollingSource}, polls the REST API and hands over the new
+ * statuses, so they show up with the delay of its poll interval. They go through a bounded buffer
+ * and are saved in the {@link TimelineDAO} and handed to the listener, in the UI thread, in
+ * micro-batches of at most {@value #MAX_BATCH_SIZE} statuses every
+ * {@value #BATCH_INTERVAL_MILLIS} ms. When the buffer is full the oldest statuses are dropped;
+ * the next load of the timeline brings them back. When the source fails it's reconnected with an
+ * exponential backoff or, if the rate limit was exceeded, when the limit resets. Use it like
+ * this:
+ * <pre>
+ * {@code
+ * LiveTimeline liveTimeline = new LiveTimeline(PollingSource.newHomeSource(twitter), homeDAO);
+ * liveTimeline.setOnStatusesListener(new LiveTimeline.OnStatusesListener() {
+ *     public void onStatuses(List<Status> statuses) {
+ *         adapter.prepend(statuses, listView);
+ *     }
+ * });
+ * liveTimeline.start(); // in onResume
+ * liveTimeline.stop(); // in onPause
+ * }
+ * </pre>
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class LiveTimeline {
+
+    private static final String TAG = LiveTimeline.class.getSimpleName();
+    private static final int BUFFER_CAPACITY = 400;
+    private static final int MAX_BATCH_SIZE = 50;
+    private static final long BATCH_INTERVAL_MILLIS = 1000L;
+    private static final long MIN_BACKOFF_MILLIS = 5 * 1000L;
+    private static final long MAX_BACKOFF_MILLIS = 5 * 60 * 1000L;
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final Comparator<Status> NEWEST_FIRST = new Comparator<Status>() {
+
+        @Override
+        public int compare(Status lhs, Status rhs) {
+            return lhs.getId() < rhs.getId() ? 1 : (lhs.getId() == rhs.getId() ? 0 : -1);
+        }
+    };
+
+    private final Source source;
+    private final TimelineDAO timelineDAO;
+    private final BlockingQueue<Status> buffer;
+    private final Sink sink;
+
+    private ScheduledExecutorService executor;
+    private volatile OnStatusesListener onStatusesListener;
+    private volatile boolean isRunning;
+    private volatile long newestId;
+    private long backoffMillis;
+
+    /**
+     * Creates a LiveTimeline.
+     * 
+     * @param source where the statuses come from.
+     * @param timelineDAO where the statuses are saved.
+     */
+    public LiveTimeline(Source source, TimelineDAO timelineDAO) {
+        this.source = source;
+        this.timelineDAO = timelineDAO;
+        this.buffer = new ArrayBlockingQueue<>(BUFFER_CAPACITY);
+        this.backoffMillis = MIN_BACKOFF_MILLIS;
+        this.sink = new Sink() {
+
+            @Override
+            public void onStatus(Status status) {
+                offer(status);
+            }
+        };
+    }
+
+    /**
+     * @param onStatusesListener the listener to notify in the UI thread or {@code null}.
+     * @return this LiveTimeline.
+     */
+    public LiveTimeline setOnStatusesListener(OnStatusesListener onStatusesListener) {
+        this.onStatusesListener = onStatusesListener;
+        return this;
+    }
+
+    /** @return if it's started. */
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    /** Connects the source and starts delivering statuses. Does nothing if already started. */
+    public synchronized void start() {
+        if (isRunning) return;
+        isRunning = true;
+        backoffMillis = MIN_BACKOFF_MILLIS;
+        executor = Executors.newScheduledThreadPool(2);
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                connect();
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                flush();
+            }
+        }, BATCH_INTERVAL_MILLIS, BATCH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Disconnects the source; the statuses still buffered are discarded. */
+    public synchronized void stop() {
+        if (!isRunning) return;
+        isRunning = false;
+        source.disconnect();
+        executor.shutdownNow();
+        executor = null;
+        buffer.clear();
+    }
+
+    /**
+     * Adds a status to the buffer, dropping the oldest one if it's full. Called by the source
+     * thread; package-private for LiveTimelineTest.
+     * 
+     * @param status the new status.
+     */
+    void offer(Status status) {
+        while (!buffer.offer(status)) {
+            if (buffer.poll() != null) Log.w(TAG, "Buffer full, oldest status dropped");
+        }
+    }
+
+    /** Connects the source and, when it disconnects, schedules the reconnection. */
+    private void connect() {
+        if (!isRunning) return;
+        long delayMillis;
+        try {
+            Long savedNewestId = timelineDAO.fetchNewestId();
+            if (savedNewestId != null && savedNewestId > newestId) newestId = savedNewestId;
+            source.connect(newestId > 0 ? newestId : null, sink);
+            backoffMillis = MIN_BACKOFF_MILLIS;
+            delayMillis = 0;
+        } catch (TwitterException ex) {
+            delayMillis = nextDelayMillis(ex);
+            Log.w(TAG, "Source disconnected, reconnecting in " + delayMillis + "ms", ex);
+        } catch (RuntimeException ex) {
+            delayMillis = nextDelayMillis(ex);
+            Log.e(TAG, "Source failed, reconnecting in " + delayMillis + "ms", ex);
+        }
+        reconnect(delayMillis);
+    }
+
+    /**
+     * Returns how long to wait before reconnecting the source after the given failure: until the
+     * limit resets if the rate limit was exceeded or else the current backoff, which is doubled
+     * up to {@value #MAX_BACKOFF_MILLIS} ms. Package-private for LiveTimelineTest.
+     * 
+     * @param ex why the source disconnected.
+     * @return the delay in milliseconds.
+     */
+    long nextDelayMillis(Exception ex) {
+        if (ex instanceof TwitterException && ((TwitterException) ex).exceededRateLimitation()) {
+            RateLimitGovernor.recordExceeded(source.getEndpoint(), (TwitterException) ex);
+            return Math.max(MIN_BACKOFF_MILLIS, RateLimitGovernor.getSecondsUntilReset(source.getEndpoint()) * 1000L);
+        }
+        long delayMillis = backoffMillis;
+        backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        return delayMillis;
+    }
+
+    /**
+     * Schedules {@link #connect()} after the given delay if still running.
+     * 
+     * @param delayMillis the delay in milliseconds.
+     */
+    private synchronized void reconnect(long delayMillis) {
+        if (!isRunning || executor == null) return;
+        executor.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                connect();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves and delivers the next micro-batch of buffered statuses. Package-private for
+     * LiveTimelineTest.
+     */
+    void flush() {
+        final List<Status> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        buffer.drainTo(batch, MAX_BATCH_SIZE);
+        if (batch.isEmpty()) return;
+        Collections.sort(batch, NEWEST_FIRST);
+        if (batch.get(0).getId() > newestId) newestId = batch.get(0).getId();
+        timelineDAO.save(batch);
+        timelineDAO.deleteAllButNewest(TimelineDAO.MAX_CACHED_STATUSES);
+        MAIN_HANDLER.post(new Runnable() {
+
+            @Override
+            public void run() {
+                OnStatusesListener listener = onStatusesListener;
+                if (isRunning && listener != null) listener.onStatuses(batch);
+            }
+        });
+    }
+
+    /**
+     * Where the new statuses come from, for example a {@link PollingSource}.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static interface Source {
+
+        /**
+         * Connects and hands the new statuses to the given sink, blocking the calling thread
+         * until {@link #disconnect()} is called.
+         * 
+         * @param sinceId the id of the newest known status or {@code null}.
+         * @param sink where the statuses are pushed.
+         * @throws TwitterException if the connection was lost.
+         */
+        void connect(Long sinceId, Sink sink) throws TwitterException;
+
+        /** Makes {@link #connect(Long, Sink)} return. May be called from any thread. */
+        void disconnect();
+
+        /** @return the {@link RateLimitGovernor} endpoint of the source or {@code null}. */
+        String getEndpoint();
+    }
+
+    /**
+     * Receives the statuses handed over by a {@link Source}.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static interface Sink {
+
+        /**
+         * Called in the source thread for each new status.
+         * 
+         * @param status the new status.
+         */
+        void onStatus(Status status);
+    }
+
+    /**
+     * Interface definition for a callback to be invoked when new statuses arrive.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static interface OnStatusesListener {
+
+        /**
+         * Called in the UI thread with each micro-batch, already saved.
+         * 
+         * @param statuses the new statuses, newest first.
+         */
+        void onStatuses(List<Status> statuses);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.live;
+
+import com.twitt4droid.RateLimitGovernor;
+
+import twitter4j.Paging;
+import twitter4j.ResponseList;
+import twitter4j.Status;
+import twitter4j.Twitter;
+import twitter4j.TwitterException;
+
+/**
+ * A {@link LiveTimeline.Source} that asks the REST API for the statuses newer than the last
+ * one it saw as soon as it connects and then every {@value #POLL_INTERVAL_MILLIS} ms, which keeps
+ * it inside the rate limit of the timeline with requests to spare for the foreground. While the
+ * {@link RateLimitGovernor} says the limit is exhausted it waits until the limit resets.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public abstract class PollingSource implements LiveTimeline.Source {
+
+    private static final long POLL_INTERVAL_MILLIS = 90 * 1000L;
+    private static final int PAGE_SIZE = 200;
+
+    private final Twitter twitter;
+    private final String endpoint;
+    private final Object lock;
+    private boolean isDisconnected;
+
+    /**
+     * Creates a PollingSource.
+     * 
+     * @param twitter a Twitter.
+     * @param endpoint the {@link RateLimitGovernor} endpoint that is polled.
+     */
+    protected PollingSource(Twitter twitter, String endpoint) {
+        this.twitter = twitter;
+        this.endpoint = endpoint;
+        this.lock = new Object();
+    }
+
+    /**
+     * Creates a PollingSource for the home timeline.
+     * 
+     * @param twitter a Twitter.
+     * @return a new PollingSource.
+     */
+    public static PollingSource newHomeSource(Twitter twitter) {
+        return new PollingSource(twitter, RateLimitGovernor.HOME_TIMELINE) {
+
+            @Override
+            protected ResponseList<Status> fetch(Twitter twitter, Paging paging) throws TwitterException {
+                return twitter.getHomeTimeline(paging);
+            }
+        };
+    }
+
+    /**
+     * Creates a PollingSource for the mentions timeline.
+     * 
+     * @param twitter a Twitter.
+     * @return a new PollingSource.
+     */
+    public static PollingSource newMentionsSource(Twitter twitter) {
+        return new PollingSource(twitter, RateLimitGovernor.MENTIONS_TIMELINE) {
+
+            @Override
+            protected ResponseList<Status> fetch(Twitter twitter, Paging paging) throws TwitterException {
+                return twitter.getMentionsTimeline(paging);
+            }
+        };
+    }
+
+    /**
+     * Fetches a page of the timeline.
+     * 
+     * @param twitter a Twitter.
+     * @param paging the page to fetch.
+     * @return the statuses, newest first.
+     * @throws TwitterException if the request failed.
+     */
+    protected abstract ResponseList<Status> fetch(Twitter twitter, Paging paging) throws TwitterException;
+
+    /** {@inheritDoc} */
+    @Override
+    public void connect(Long sinceId, LiveTimeline.Sink sink) throws TwitterException {
+        synchronized (lock) {
+            isDisconnected = false;
+        }
+        long newestId = sinceId != null ? sinceId : 0;
+        long waitMillis = 0; // polls right away, then every interval
+        while (await(waitMillis)) {
+            waitMillis = POLL_INTERVAL_MILLIS;
+            if (RateLimitGovernor.canRequest(endpoint)) {
+                Paging paging = new Paging(1, PAGE_SIZE);
+                if (newestId > 0) paging.setSinceId(newestId);
+                ResponseList<Status> statuses = fetch(twitter, paging);
+                RateLimitGovernor.record(endpoint, statuses);
+                for (int i = statuses.size() - 1; i >= 0; i--) {
+                    Status status = statuses.get(i);
+                    if (status.getId() > newestId) newestId = status.getId();
+                    sink.onStatus(status);
+                }
+            } else waitMillis = Math.max(waitMillis, RateLimitGovernor.getSecondsUntilReset(endpoint) * 1000L);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void disconnect() {
+        synchronized (lock) {
+            isDisconnected = true;
+            lock.notifyAll();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Waits the given time unless disconnected or interrupted first.
+     * 
+     * @param millis the time to wait in milliseconds.
+     * @return if it's still connected.
+     */
+    private boolean await(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        synchronized (lock) {
+            try {
+                long left;
+                while (!isDisconnected && (left = deadline - System.currentTimeMillis()) > 0) lock.wait(left);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return !isDisconnected;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.sync;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Runs {@link TimelineSyncer} when the job scheduled by {@link TimelineSync} starts, on
+ * LOLLIPOP+.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class SyncJobService extends JobService {
+
+    private static final String TAG = SyncJobService.class.getSimpleName();
+
+    private SyncTask syncTask;
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        syncTask = new SyncTask(params);
+        syncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (syncTask != null) syncTask.cancel(false);
+        return false; // the next period will catch up
+    }
+
+    /**
+     * Syncs in background and tells the JobScheduler when it's done.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private class SyncTask extends AsyncTask<Void, Void, Integer> {
+
+        private final JobParameters params;
+
+        /** @param params the job parameters. */
+        private SyncTask(JobParameters params) {
+            this.params = params;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Integer doInBackground(Void... ignored) {
+            return new TimelineSyncer(SyncJobService.this).sync();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void onPostExecute(Integer fetched) {
+            Log.v(TAG, "Sync done, " + fetched + " statuses fetched");
+            jobFinished(params, false);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.sync;
+
+import android.app.IntentService;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * Runs {@link TimelineSyncer} when the alarm set by {@link TimelineSync} goes off, before
+ * LOLLIPOP.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class SyncService extends IntentService {
+
+    private static final String TAG = SyncService.class.getSimpleName();
+
+    /** Creates a SyncService. */
+    public SyncService() {
+        super(TAG);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        int fetched = new TimelineSyncer(this).sync();
+        Log.v(TAG, "Sync done, " + fetched + " statuses fetched");
+    }
+}
\ No newline at end of file
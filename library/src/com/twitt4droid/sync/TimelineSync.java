@@ -0,0 +1,242 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.sync;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+
+import com.twitt4droid.R;
+import com.twitt4droid.Resources;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the periodic background sync of the timelines done by {@link TimelineSyncer}. On
+ * LOLLIPOP+ it's a JobScheduler job, so the system batches it with other work; older versions use
+ * an inexact, non waking, repeating alarm. The app must declare the services in its
+ * AndroidManifest.xml:
+ * <pre>
+ * {@code
+ * <service android:name="com.twitt4droid.sync.SyncService" />
+ * <service
+ *     android:name="com.twitt4droid.sync.SyncJobService"
+ *     android:permission="android.permission.BIND_JOB_SERVICE" />
+ * }
+ * </pre>
+ * And then:
+ * <pre>
+ * {@code
+ * TimelineSync.schedule(context, AlarmManager.INTERVAL_HOUR, true); // only on unmetered networks
+ * }
+ * </pre>
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public final class TimelineSync {
+
+    private static volatile Scheduler scheduler;
+
+    /**
+     * Default constructor. Do NOT try to initialize this class, it is suppose
+     * to be an static utility.
+     */
+    private TimelineSync() {
+        throw new IllegalAccessError("This class cannot be instantiated nor extended");
+    }
+
+    /**
+     * Schedules the periodic sync, replacing the previous schedule.
+     * 
+     * @param context the application context.
+     * @param intervalMillis the interval between syncs in milliseconds.
+     * @param isUnmeteredOnly if it only can sync on unmetered networks, like Wi-Fi.
+     */
+    public static void schedule(Context context, long intervalMillis, boolean isUnmeteredOnly) {
+        Resources.apply(Resources.getPreferences(context)
+            .edit()
+            .putBoolean(context.getString(R.string.twitt4droid_sync_unmetered_only_key), isUnmeteredOnly));
+        getScheduler().schedule(context.getApplicationContext(), intervalMillis, isUnmeteredOnly);
+    }
+
+    /**
+     * Cancels the periodic sync.
+     * 
+     * @param context the application context.
+     */
+    public static void cancel(Context context) {
+        getScheduler().cancel(context.getApplicationContext());
+    }
+
+    /**
+     * Replaces the Scheduler, for example with an {@link ExecutorScheduler} in tests.
+     * 
+     * @param newScheduler a Scheduler or {@code null} to use the platform one.
+     */
+    public static void setScheduler(Scheduler newScheduler) {
+        scheduler = newScheduler;
+    }
+
+    /** @return the current Scheduler. */
+    private static Scheduler getScheduler() {
+        Scheduler current = scheduler;
+        if (current == null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) current = new JobSyncScheduler();
+            else current = new AlarmSyncScheduler();
+            scheduler = current;
+        }
+        return current;
+    }
+
+    /**
+     * Runs {@link TimelineSyncer} periodically.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static interface Scheduler {
+
+        /**
+         * Schedules the periodic sync, replacing the previous schedule.
+         * 
+         * @param context the application context.
+         * @param intervalMillis the interval between syncs in milliseconds.
+         * @param isUnmeteredOnly if it only can sync on unmetered networks.
+         */
+        void schedule(Context context, long intervalMillis, boolean isUnmeteredOnly);
+
+        /**
+         * Cancels the periodic sync.
+         * 
+         * @param context the application context.
+         */
+        void cancel(Context context);
+    }
+
+    /**
+     * Runs the sync in a background thread of this process; nothing survives the process. Useful
+     * for tests and for debugging the sync without waiting for the system.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static class ExecutorScheduler implements Scheduler {
+
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        private ScheduledFuture<?> future;
+
+        /** {@inheritDoc} */
+        @Override
+        public synchronized void schedule(final Context context, long intervalMillis, boolean isUnmeteredOnly) {
+            if (future != null) future.cancel(false);
+            future = executor.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    new TimelineSyncer(context).sync();
+                }
+            }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public synchronized void cancel(Context context) {
+            if (future != null) future.cancel(false);
+            future = null;
+        }
+    }
+
+    /**
+     * Schedules the sync with an inexact repeating alarm that doesn't wake the device up.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private static class AlarmSyncScheduler implements Scheduler {
+
+        /** {@inheritDoc} */
+        @Override
+        public void schedule(Context context, long intervalMillis, boolean isUnmeteredOnly) {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                    SystemClock.elapsedRealtime() + intervalMillis,
+                    intervalMillis,
+                    newPendingIntent(context));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void cancel(Context context) {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            alarmManager.cancel(newPendingIntent(context));
+        }
+
+        /**
+         * @param context the application context.
+         * @return the PendingIntent that starts {@link SyncService}.
+         */
+        private static PendingIntent newPendingIntent(Context context) {
+            return PendingIntent.getService(context, 0, new Intent(context, SyncService.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        }
+    }
+
+    /**
+     * Schedules the sync as a periodic JobScheduler job.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static class JobSyncScheduler implements Scheduler {
+
+        private static final int JOB_ID = "com.twitt4droid.sync".hashCode();
+
+        /** {@inheritDoc} */
+        @Override
+        public void schedule(Context context, long intervalMillis, boolean isUnmeteredOnly) {
+            JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, SyncJobService.class))
+                .setPeriodic(intervalMillis)
+                .setRequiredNetworkType(isUnmeteredOnly ? JobInfo.NETWORK_TYPE_UNMETERED : JobInfo.NETWORK_TYPE_ANY)
+                .build();
+            getJobScheduler(context).schedule(job);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void cancel(Context context) {
+            getJobScheduler(context).cancel(JOB_ID);
+        }
+
+        /**
+         * @param context the application context.
+         * @return the JobScheduler.
+         */
+        private static JobScheduler getJobScheduler(Context context) {
+            return (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.sync;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.os.BatteryManager;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import com.twitt4droid.R;
+import com.twitt4droid.RateLimitGovernor;
+import com.twitt4droid.Resources;
+import com.twitt4droid.Twitt4droid;
+import com.twitt4droid.data.dao.ListTimelineDAO;
+import com.twitt4droid.data.dao.TimelineDAO;
+import com.twitt4droid.data.dao.impl.DAOFactory;
+
+import twitter4j.Paging;
+import twitter4j.ResponseList;
+import twitter4j.Status;
+import twitter4j.Twitter;
+import twitter4j.TwitterException;
+import twitter4j.User;
+import twitter4j.UserList;
+
+/**
+ * Fetches the statuses that are new since the last sync of the home, mentions and list timelines
+ * and saves them in the DAOs, so the timelines open with a warm cache. A sync makes at most
+ * {@value #MAX_REQUESTS} requests, leaves {@value #RATE_LIMIT_RESERVE} requests of each rate
+ * limit window, as tracked by {@link RateLimitGovernor}, for the foreground and is skipped when
+ * the battery is low or the network isn't allowed. It runs in the calling thread.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class TimelineSyncer {
+
+    /** Returned by {@link #sync()} when the sync was skipped. */
+    public static final int SKIPPED = -1;
+
+    private static final String TAG = TimelineSyncer.class.getSimpleName();
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_REQUESTS = 6;
+    private static final int RATE_LIMIT_RESERVE = 2;
+    private static final int MIN_BATTERY_PERCENT = 15;
+
+    private final Context context;
+    private final DAOFactory daoFactory;
+    private int requestCount;
+
+    /**
+     * Creates a TimelineSyncer.
+     * 
+     * @param context the application context.
+     */
+    public TimelineSyncer(Context context) {
+        this.context = context.getApplicationContext();
+        this.daoFactory = new DAOFactory(this.context);
+    }
+
+    /**
+     * Syncs the home and mentions timelines and then the user lists while the request budget
+     * lasts.
+     * 
+     * @return how many statuses were fetched or {@link #SKIPPED}.
+     */
+    public int sync() {
+        if (!canSync()) return SKIPPED;
+        Twitter twitter = Twitt4droid.getTwitter(context);
+        requestCount = 0;
+        int fetched = 0;
+        String endpoint = null;
+        try {
+            endpoint = RateLimitGovernor.HOME_TIMELINE;
+            if (hasBudget(endpoint)) {
+                TimelineDAO homeDAO = daoFactory.getHomeTimelineDAO();
+                ResponseList<Status> statuses = request(endpoint, twitter.getHomeTimeline(newPaging(homeDAO.fetchNewestId())));
+                homeDAO.save(statuses);
+                homeDAO.deleteAllButNewest(TimelineDAO.MAX_CACHED_STATUSES);
+                fetched += statuses.size();
+            }
+
+            endpoint = RateLimitGovernor.MENTIONS_TIMELINE;
+            if (hasBudget(endpoint)) {
+                TimelineDAO mentionsDAO = daoFactory.getMentionsTimelineDAO();
+                ResponseList<Status> statuses = request(endpoint, twitter.getMentionsTimeline(newPaging(mentionsDAO.fetchNewestId())));
+                mentionsDAO.save(statuses);
+                mentionsDAO.deleteAllButNewest(TimelineDAO.MAX_CACHED_STATUSES);
+                fetched += statuses.size();
+            }
+
+            User user = Twitt4droid.getCurrentUser(context);
+            endpoint = RateLimitGovernor.USER_LISTS;
+            if (user == null || !hasBudget(endpoint)) return fetched;
+            ResponseList<UserList> lists = request(endpoint, twitter.getUserLists(user.getScreenName()));
+            ListTimelineDAO listDAO = daoFactory.getListTimelineDAO();
+            endpoint = RateLimitGovernor.LIST_STATUSES;
+            for (UserList list : lists) {
+                if (!hasBudget(endpoint)) break; // every list shares the same window
+                ResponseList<Status> statuses = request(endpoint, twitter.getUserListStatuses(list.getId(), newPaging(listDAO.fetchNewestIdByListId(list.getId()))));
+                listDAO.save(statuses, list.getId());
+                listDAO.deleteAllButNewestByListId(list.getId(), TimelineDAO.MAX_CACHED_STATUSES);
+                fetched += statuses.size();
+            }
+        } catch (TwitterException ex) {
+            if (ex.exceededRateLimitation()) {
+                RateLimitGovernor.recordExceeded(endpoint, ex);
+                Log.w(TAG, "Rate limit exceeded, sync stopped after " + requestCount + " requests");
+            } else Log.e(TAG, "Sync failed after " + requestCount + " requests", ex);
+        }
+        return fetched;
+    }
+
+    /** @return if the user is logged in, the network is allowed and the battery isn't low. */
+    private boolean canSync() {
+        if (!Twitt4droid.isUserLoggedIn(context)) return false;
+        if (!Resources.isConnectedToInternet(context)) return false;
+        boolean isUnmeteredOnly = Resources.getPreferences(context).getBoolean(context.getString(R.string.twitt4droid_sync_unmetered_only_key), false);
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (isUnmeteredOnly && ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager)) {
+            Log.v(TAG, "Sync skipped, network is metered");
+            return false;
+        }
+        if (isBatteryLow()) {
+            Log.v(TAG, "Sync skipped, battery is low");
+            return false;
+        }
+        return true;
+    }
+
+    /** @return if the battery is below {@value #MIN_BATTERY_PERCENT}% and not charging. */
+    private boolean isBatteryLow() {
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) return false;
+        if (battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0) return false;
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return level >= 0 && scale > 0 && level * 100 / scale < MIN_BATTERY_PERCENT;
+    }
+
+    /**
+     * Counts a request and records its rate limit status.
+     * 
+     * @param endpoint the endpoint of the request.
+     * @param response the response of the request.
+     * @return the given response.
+     */
+    private <T> ResponseList<T> request(String endpoint, ResponseList<T> response) {
+        requestCount++;
+        RateLimitGovernor.record(endpoint, response);
+        return response;
+    }
+
+    /**
+     * @param endpoint the endpoint of the next request.
+     * @return if another request fits in the budget and the rate limit window of the given
+     *         endpoint isn't down to the reserve.
+     */
+    private boolean hasBudget(String endpoint) {
+        if (requestCount >= MAX_REQUESTS || !RateLimitGovernor.canRequest(endpoint)) return false;
+        int remaining = RateLimitGovernor.getRemaining(endpoint);
+        return remaining < 0 || remaining > RATE_LIMIT_RESERVE;
+    }
+
+    /**
+     * @param sinceId the id of the newest saved status or {@code null}.
+     * @return a Paging for the statuses newer than the given id.
+     */
+    private static Paging newPaging(Long sinceId) {
+        Paging paging = new Paging(1, PAGE_SIZE);
+        if (sinceId != null && sinceId > 0) paging.setSinceId(sinceId);
+        return paging;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.util;
+
+import android.annotation.SuppressLint;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.Environment;
+
+import java.io.File;
+
+/**
+ * Memory and disk budgets and location of the image caches used by {@link Images}. Use it like
+ * this:
+ * <pre>
+ * {@code
+ * Images.setCacheConfig(ImageCacheConfig.defaultConfig(context).setDiskCacheSize(20 * 1024 * 1024));
+ * }
+ * </pre>
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class ImageCacheConfig {
+
+    private static final String IMAGE_CACHE_DIR = "images";
+    private static final int MB = 1024 * 1024;
+    private static final int LARGE_MEMORY_CLASS = 128;
+    private static final int LOW_RAM_MEMORY_DIVISOR = 16;
+    private static final int DEFAULT_MEMORY_DIVISOR = 8;
+    private static final long LOW_RAM_DISK_CACHE_SIZE = 5 * MB;
+    private static final long DEFAULT_DISK_CACHE_SIZE = 10 * MB;
+    private static final long LARGE_DISK_CACHE_SIZE = 20 * MB;
+
+    private int memoryCacheSize;
+    private long diskCacheSize;
+    private File diskCacheDir;
+
+    /**
+     * Creates a configuration with budgets adapted to the device: the memory budget is a fraction
+     * of {@link ActivityManager#getMemoryClass()}, smaller on low RAM devices (KITKAT+), and the disk
+     * budget grows on devices with a large memory class (usually tablets). The disk cache is
+     * stored in the external cache dir when available; otherwise in the internal cache dir.
+     * 
+     * @param context the application context.
+     * @return a new ImageCacheConfig.
+     */
+    public static ImageCacheConfig defaultConfig(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = activityManager.getMemoryClass();
+        boolean isLowRamDevice = isLowRamDevice(activityManager);
+        String cachePath =
+                Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState()) || Files.isExternalStorageRemovable()
+                ? Files.getExternalCacheDir(context).getPath()
+                : context.getCacheDir().getPath();
+        return new ImageCacheConfig()
+            .setMemoryCacheSize(memoryClass * MB / (isLowRamDevice ? LOW_RAM_MEMORY_DIVISOR : DEFAULT_MEMORY_DIVISOR))
+            .setDiskCacheSize(isLowRamDevice ? LOW_RAM_DISK_CACHE_SIZE : memoryClass >= LARGE_MEMORY_CLASS ? LARGE_DISK_CACHE_SIZE : DEFAULT_DISK_CACHE_SIZE)
+            .setDiskCacheDir(new File(cachePath + File.separator + IMAGE_CACHE_DIR));
+    }
+
+    /**
+     * @param activityManager an ActivityManager.
+     * @return ActivityManager.isLowRamDevice() when KITKAT+; otherwise {@code false}.
+     */
+    @SuppressLint("NewApi")
+    private static boolean isLowRamDevice(ActivityManager activityManager) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) return activityManager.isLowRamDevice();
+        return false;
+    }
+
+    /** @return the memory cache budget in bytes. */
+    public int getMemoryCacheSize() {
+        return memoryCacheSize;
+    }
+
+    /**
+     * Sets the memory cache budget.
+     * 
+     * @param memoryCacheSize the memory cache budget in bytes.
+     * @return this ImageCacheConfig.
+     */
+    public ImageCacheConfig setMemoryCacheSize(int memoryCacheSize) {
+        this.memoryCacheSize = memoryCacheSize;
+        return this;
+    }
+
+    /** @return the disk cache budget in bytes. */
+    public long getDiskCacheSize() {
+        return diskCacheSize;
+    }
+
+    /**
+     * Sets the disk cache budget.
+     * 
+     * @param diskCacheSize the disk cache budget in bytes.
+     * @return this ImageCacheConfig.
+     */
+    public ImageCacheConfig setDiskCacheSize(long diskCacheSize) {
+        this.diskCacheSize = diskCacheSize;
+        return this;
+    }
+
+    /** @return the directory where the disk cache is stored. */
+    public File getDiskCacheDir() {
+        return diskCacheDir;
+    }
+
+    /**
+     * Sets the directory where the disk cache is stored.
+     * 
+     * @param diskCacheDir a directory.
+     * @return this ImageCacheConfig.
+     */
+    public ImageCacheConfig setDiskCacheDir(File diskCacheDir) {
+        this.diskCacheDir = diskCacheDir;
+        return this;
+    }
+}
\ No newline at end of file
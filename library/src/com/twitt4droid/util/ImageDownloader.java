@@ -0,0 +1,303 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.util;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Locale;
+
+/**
+ * Downloads images over HTTP. Streams are always read to the end and closed so the connection
+ * goes back to the keep-alive pool, and conditional GETs are made when validators of a cached
+ * copy are given.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+final class ImageDownloader {
+
+    private static final String TAG = ImageDownloader.class.getSimpleName();
+    private static final int CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+    private static final int READ_TIMEOUT_MILLIS = 20 * 1000;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final long DEFAULT_FRESHNESS_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final String MAX_AGE = "max-age=";
+
+    /**
+     * Default constructor. Do NOT try to initialize this class, it is suppose
+     * to be an static utility.
+     */
+    private ImageDownloader() {
+        throw new IllegalAccessError("This class cannot be instantiated nor extended");
+    }
+
+    /**
+     * Downloads the given url.
+     * 
+     * @param url an http or https url.
+     * @param cached the cache info of the cached copy to revalidate or {@code null} to make a
+     *        plain GET.
+     * @return the response.
+     * @throws IOException if the url is invalid, the server doesn't respond with 200 or 304 or
+     *         the connection fails.
+     */
+    static Response download(String url, CacheInfo cached) throws IOException {
+        URLConnection urlConnection = new URL(url).openConnection();
+        if (!(urlConnection instanceof HttpURLConnection)) throw new IOException("Not an http url: " + url);
+        HttpURLConnection connection = (HttpURLConnection) urlConnection;
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setUseCaches(false); // the disk cache is ours
+        if (cached != null) {
+            if (!Strings.isNullOrBlank(cached.getETag())) connection.setRequestProperty("If-None-Match", cached.getETag());
+            if (!Strings.isNullOrBlank(cached.getLastModified())) connection.setRequestProperty("If-Modified-Since", cached.getLastModified());
+        }
+        InputStream in = null;
+        try {
+            int responseCode = connection.getResponseCode();
+            CacheInfo cacheInfo = CacheInfo.from(connection, System.currentTimeMillis());
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                return new Response(null, cacheInfo.withValidatorsOf(cached));
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                in = connection.getErrorStream();
+                drain(in);
+                throw new IOException("Unexpected HTTP response " + responseCode + " for " + url);
+            }
+            in = connection.getInputStream();
+            int contentLength = connection.getContentLength();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(contentLength > 0 ? contentLength : BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) out.write(buffer, 0, count);
+            return new Response(out.toByteArray(), cacheInfo);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    Log.e(TAG, "Couldn't close stream", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the given stream to the end so the connection can be reused.
+     * 
+     * @param in a stream or {@code null}.
+     * @throws IOException if the stream couldn't be read.
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) return;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (in.read(buffer) != -1);
+    }
+
+    /**
+     * The result of a download.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    static final class Response {
+
+        private final byte[] data;
+        private final CacheInfo cacheInfo;
+
+        /**
+         * Creates a Response.
+         * 
+         * @param data the downloaded data or {@code null} if the cached copy is still valid.
+         * @param cacheInfo the cache info of the response.
+         */
+        private Response(byte[] data, CacheInfo cacheInfo) {
+            this.data = data;
+            this.cacheInfo = cacheInfo;
+        }
+
+        /** @return the downloaded data or {@code null} if the cached copy is still valid. */
+        byte[] getData() {
+            return data;
+        }
+
+        /** @return if the server answered 304 Not Modified. */
+        boolean isNotModified() {
+            return data == null;
+        }
+
+        /** @return the cache info of the response. */
+        CacheInfo getCacheInfo() {
+            return cacheInfo;
+        }
+    }
+
+    /**
+     * HTTP validators and freshness of a cached image, stored next to it in the disk cache.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    static final class CacheInfo {
+
+        /** Cache info of images saved without HTTP headers; they never expire. */
+        static final CacheInfo NONE = new CacheInfo(null, null, Long.MAX_VALUE, true);
+
+        private static final String SEPARATOR = "\n";
+
+        private final String eTag;
+        private final String lastModified;
+        private final long expiresAt;
+        private final boolean isStorable;
+
+        /**
+         * Creates a CacheInfo.
+         * 
+         * @param eTag the ETag header or {@code null}.
+         * @param lastModified the Last-Modified header or {@code null}.
+         * @param expiresAt when the cached copy must be revalidated, in milliseconds since epoch.
+         * @param isStorable if the response can be stored.
+         */
+        private CacheInfo(String eTag, String lastModified, long expiresAt, boolean isStorable) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+            this.isStorable = isStorable;
+        }
+
+        /**
+         * Reads the cache info of the given response. Cache-Control max-age wins over Expires;
+         * when neither is present the image is considered fresh for a day.
+         * 
+         * @param connection a connected HttpURLConnection.
+         * @param now the current time in milliseconds.
+         * @return a CacheInfo.
+         */
+        private static CacheInfo from(HttpURLConnection connection, long now) {
+            String cacheControl = connection.getHeaderField("Cache-Control");
+            cacheControl = cacheControl == null ? "" : cacheControl.toLowerCase(Locale.US);
+            long expiresAt;
+            int maxAgeIndex = cacheControl.indexOf(MAX_AGE);
+            if (cacheControl.contains("no-cache")) expiresAt = 0;
+            else if (maxAgeIndex != -1) expiresAt = now + parseSeconds(cacheControl, maxAgeIndex + MAX_AGE.length()) * 1000;
+            else if (connection.getExpiration() != 0) expiresAt = connection.getExpiration();
+            else expiresAt = now + DEFAULT_FRESHNESS_MILLIS;
+            return new CacheInfo(
+                    connection.getHeaderField("ETag"),
+                    connection.getHeaderField("Last-Modified"),
+                    expiresAt,
+                    !cacheControl.contains("no-store"));
+        }
+
+        /**
+         * Parses the number of seconds that starts at the given index.
+         * 
+         * @param value a header value.
+         * @param start where the number starts.
+         * @return the number of seconds or 0 if it isn't a number.
+         */
+        private static long parseSeconds(String value, int start) {
+            int end = start;
+            while (end < value.length() && Character.isDigit(value.charAt(end))) end++;
+            if (end == start) return 0;
+            try {
+                return Long.parseLong(value.substring(start, end));
+            } catch (NumberFormatException ex) {
+                return 0;
+            }
+        }
+
+        /**
+         * Decodes a CacheInfo encoded with {@link #encode()}.
+         * 
+         * @param encoded an encoded CacheInfo.
+         * @return a CacheInfo; {@link #NONE} if the given string is blank or malformed.
+         */
+        static CacheInfo decode(String encoded) {
+            if (Strings.isNullOrBlank(encoded)) return NONE;
+            String[] fields = encoded.split(SEPARATOR, -1);
+            if (fields.length != 3) return NONE;
+            try {
+                return new CacheInfo(emptyToNull(fields[0]), emptyToNull(fields[1]), Long.parseLong(fields[2]), true);
+            } catch (NumberFormatException ex) {
+                return NONE;
+            }
+        }
+
+        /** @return this CacheInfo as string to store in the disk cache; empty for {@link #NONE}. */
+        String encode() {
+            if (this == NONE) return "";
+            return nullToEmpty(eTag) + SEPARATOR + nullToEmpty(lastModified) + SEPARATOR + expiresAt;
+        }
+
+        /**
+         * Keeps the freshness of this CacheInfo and fills the validators missing in a 304
+         * response with the ones of the cached copy.
+         * 
+         * @param cached the CacheInfo of the cached copy.
+         * @return a CacheInfo.
+         */
+        private CacheInfo withValidatorsOf(CacheInfo cached) {
+            return new CacheInfo(
+                    eTag != null ? eTag : cached.eTag,
+                    lastModified != null ? lastModified : cached.lastModified,
+                    expiresAt,
+                    isStorable);
+        }
+
+        /** @return if the cached copy can be used without revalidating it. */
+        boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+
+        /** @return if the response can be stored in the disk cache. */
+        boolean isStorable() {
+            return isStorable;
+        }
+
+        /** @return the ETag header or {@code null}. */
+        String getETag() {
+            return eTag;
+        }
+
+        /** @return the Last-Modified header or {@code null}. */
+        String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @param value a string.
+         * @return {@code null} if the string is empty; otherwise the string.
+         */
+        private static String emptyToNull(String value) {
+            return value.length() == 0 ? null : value;
+        }
+
+        /**
+         * @param value a string or {@code null}.
+         * @return an empty string if the string is {@code null}; otherwise the string.
+         */
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+    }
+}
\ No newline at end of file
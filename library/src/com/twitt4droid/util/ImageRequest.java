@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.util;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+/**
+ * A request to load an image scheduled by {@link Images}. It can be used to cancel the load.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public final class ImageRequest {
+
+    /**
+     * Image request priorities. Higher priorities are always served first.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static enum Priority { LOW, NORMAL, HIGH }
+
+    private final String url;
+    private final String host;
+    private final Priority priority;
+    private final OnImageLoadedListener listener;
+
+    private volatile boolean isCancelled;
+    private volatile boolean isDone;
+
+    /**
+     * Creates an ImageRequest.
+     * 
+     * @param url the image url.
+     * @param priority the request priority.
+     * @param listener the listener to notify in the UI thread or {@code null}.
+     */
+    ImageRequest(String url, Priority priority, OnImageLoadedListener listener) {
+        this.url = url;
+        this.host = Uri.parse(url).getHost();
+        this.priority = priority;
+        this.listener = listener;
+    }
+
+    /** @return the image url. */
+    public String getUrl() {
+        return url;
+    }
+
+    /** @return the request priority. */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /** Cancels this request. A cancelled request is skipped if it hasn't started yet. */
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    /** @return if this request has been cancelled. */
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /** @return if this request has finished or has been cancelled. */
+    public boolean isDone() {
+        return isDone || isCancelled;
+    }
+
+    /** @return the url host. */
+    String getHost() {
+        return host;
+    }
+
+    /**
+     * Finishes this request and notifies the listener unless it has been cancelled. Must be
+     * called in the UI thread.
+     * 
+     * @param bitmap the loaded bitmap or {@code null} if it couldn't be loaded.
+     */
+    void deliver(Bitmap bitmap) {
+        isDone = true;
+        if (!isCancelled && listener != null) listener.onImageLoaded(this, bitmap);
+    }
+
+    /**
+     * Callback invoked in the UI thread when an image request finishes.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static interface OnImageLoadedListener {
+
+        /**
+         * @param request the finished request.
+         * @param bitmap the loaded bitmap or {@code null} if it couldn't be loaded.
+         */
+        void onImageLoaded(ImageRequest request, Bitmap bitmap);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.util;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * Schedules image requests in two lanes: a decode lane that reads the caches and decodes
+ * bitmaps, and a network lane that downloads the images that aren't cached. Each lane serves
+ * higher priority requests first, limits how many downloads run at the same time against the
+ * same host and, while flinging, serves the newest requests first (LIFO) since the older ones
+ * are probably off screen already.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+final class ImageScheduler {
+
+    private static final String TAG = ImageScheduler.class.getSimpleName();
+    private static final int DECODE_THREADS = 2;
+    private static final int NETWORK_THREADS = 4;
+    private static final int MAX_DOWNLOADS_PER_HOST = 2;
+    private static final int NO_HOST_LIMIT = 0;
+
+    private final Stages stages;
+    private final Handler mainHandler;
+    private final Lane decodeLane;
+    private final Lane networkLane;
+
+    private volatile boolean isLifo;
+
+    /**
+     * Creates an ImageScheduler.
+     * 
+     * @param stages the work done in each stage.
+     */
+    ImageScheduler(Stages stages) {
+        this.stages = stages;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.decodeLane = new Lane("twitt4droid-image-decode", DECODE_THREADS, NO_HOST_LIMIT);
+        this.networkLane = new Lane("twitt4droid-image-network", NETWORK_THREADS, MAX_DOWNLOADS_PER_HOST);
+    }
+
+    /**
+     * Schedules the given request. It is looked up in the caches first and downloaded only if it
+     * isn't cached.
+     * 
+     * @param request an ImageRequest.
+     */
+    void submit(final ImageRequest request) {
+        decodeLane.enqueue(new Task(request) {
+
+            @Override
+            void run() {
+                Bitmap bitmap = stages.loadFromCache(request.getUrl());
+                if (bitmap != null) deliver(request, bitmap);
+                else download(request);
+            }
+        });
+    }
+
+    /**
+     * Sets if the newest requests must be served first, for example while a list is flinging.
+     * 
+     * @param isLifo {@code true} to serve the newest requests first; {@code false} to serve
+     *        them in order.
+     */
+    void setLifo(boolean isLifo) {
+        this.isLifo = isLifo;
+    }
+
+    /**
+     * Schedules the download of the given request.
+     * 
+     * @param request an ImageRequest.
+     */
+    private void download(final ImageRequest request) {
+        networkLane.enqueue(new Task(request) {
+
+            @Override
+            void run() {
+                // Another request may have loaded it while this one was waiting
+                Bitmap bitmap = stages.loadFromMemory(request.getUrl());
+                if (bitmap != null) {
+                    deliver(request, bitmap);
+                    return;
+                }
+                try {
+                    byte[] data = stages.download(request.getUrl());
+                    if (data != null) decode(request, data);
+                    else deliver(request, null);
+                } catch (IOException ex) {
+                    Log.w(TAG, "Couldn't download " + request.getUrl(), ex);
+                    deliver(request, null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedules the decoding of the downloaded data of the given request.
+     * 
+     * @param request an ImageRequest.
+     * @param data the downloaded data.
+     */
+    private void decode(final ImageRequest request, final byte[] data) {
+        decodeLane.enqueue(new Task(request) {
+
+            @Override
+            void run() {
+                deliver(request, stages.decode(request.getUrl(), data));
+            }
+        });
+    }
+
+    /**
+     * Delivers the result of the given request in the UI thread.
+     * 
+     * @param request an ImageRequest.
+     * @param bitmap the loaded bitmap or {@code null}.
+     */
+    private void deliver(final ImageRequest request, final Bitmap bitmap) {
+        mainHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                request.deliver(bitmap);
+            }
+        });
+    }
+
+    /**
+     * The work done in each stage of a request.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    static interface Stages {
+
+        /**
+         * @param url an url.
+         * @return the bitmap from the memory cache or {@code null}.
+         */
+        Bitmap loadFromMemory(String url);
+
+        /**
+         * @param url an url.
+         * @return the bitmap from the memory cache or disk cache or {@code null}.
+         */
+        Bitmap loadFromCache(String url);
+
+        /**
+         * Downloads the given url and stores the data in the disk cache.
+         * 
+         * @param url an url.
+         * @return the downloaded data or {@code null}.
+         * @throws IOException if the download fails.
+         */
+        byte[] download(String url) throws IOException;
+
+        /**
+         * Decodes the downloaded data and stores the bitmap in the memory cache.
+         * 
+         * @param url the url of the data.
+         * @param data the downloaded data.
+         * @return the bitmap or {@code null} if it couldn't be decoded.
+         */
+        Bitmap decode(String url, byte[] data);
+    }
+
+    /**
+     * A unit of work of a request.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private static abstract class Task {
+
+        final ImageRequest request;
+
+        /** @param request the request this task belongs to. */
+        Task(ImageRequest request) {
+            this.request = request;
+        }
+
+        /** Does the work. */
+        abstract void run();
+    }
+
+    /**
+     * A pool of background threads that take tasks from one queue per priority.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private final class Lane {
+
+        private final List<LinkedList<Task>> queues;
+        private final Map<String, Integer> activeTasksByHost;
+        private final int maxTasksPerHost;
+
+        /**
+         * Creates a Lane and starts its threads.
+         * 
+         * @param name the threads name.
+         * @param threadCount how many threads.
+         * @param maxTasksPerHost how many tasks can run at the same time for the same host or
+         *        {@link ImageScheduler#NO_HOST_LIMIT}.
+         */
+        Lane(String name, int threadCount, int maxTasksPerHost) {
+            this.maxTasksPerHost = maxTasksPerHost;
+            this.activeTasksByHost = new HashMap<>();
+            ImageRequest.Priority[] priorities = ImageRequest.Priority.values();
+            this.queues = new ArrayList<>(priorities.length);
+            for (int i = 0; i < priorities.length; i++) queues.add(new LinkedList<Task>());
+            for (int i = 0; i < threadCount; i++) {
+                Thread thread = new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        loop();
+                    }
+                }, name + "-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        /**
+         * Adds the given task to the queue of its priority.
+         * 
+         * @param task a Task.
+         */
+        synchronized void enqueue(Task task) {
+            queues.get(task.request.getPriority().ordinal()).add(task);
+            notifyAll();
+        }
+
+        /** Runs tasks forever. */
+        private void loop() {
+            while (true) {
+                Task task;
+                try {
+                    task = take();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    Log.e(TAG, "Image request failed", ex);
+                    deliver(task.request, null);
+                } finally {
+                    finished(task);
+                }
+            }
+        }
+
+        /**
+         * Waits for the next runnable task.
+         * 
+         * @return a Task.
+         * @throws InterruptedException if the thread is interrupted while waiting.
+         */
+        private synchronized Task take() throws InterruptedException {
+            Task task;
+            while ((task = poll()) == null) wait();
+            String host = task.request.getHost();
+            if (maxTasksPerHost != NO_HOST_LIMIT && host != null) {
+                Integer active = activeTasksByHost.get(host);
+                activeTasksByHost.put(host, active == null ? 1 : active + 1);
+            }
+            return task;
+        }
+
+        /**
+         * Removes the next runnable task, from the highest priority queue to the lowest one. Tasks
+         * of cancelled requests are dropped and tasks whose host is at its limit are skipped.
+         * 
+         * @return a Task or {@code null} if no task can run now.
+         */
+        private Task poll() {
+            boolean lifo = isLifo;
+            for (int priority = queues.size() - 1; priority >= 0; priority--) {
+                LinkedList<Task> queue = queues.get(priority);
+                ListIterator<Task> iterator = queue.listIterator(lifo ? queue.size() : 0);
+                while (lifo ? iterator.hasPrevious() : iterator.hasNext()) {
+                    Task task = lifo ? iterator.previous() : iterator.next();
+                    if (task.request.isCancelled()) iterator.remove();
+                    else if (!isHostAtLimit(task.request.getHost())) {
+                        iterator.remove();
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param host a host.
+         * @return if the given host has reached the maximum of tasks running at the same time.
+         */
+        private boolean isHostAtLimit(String host) {
+            if (maxTasksPerHost == NO_HOST_LIMIT || host == null) return false;
+            Integer active = activeTasksByHost.get(host);
+            return active != null && active >= maxTasksPerHost;
+        }
+
+        /**
+         * Releases the host slot of the given task.
+         * 
+         * @param task a finished Task.
+         */
+        private synchronized void finished(Task task) {
+            String host = task.request.getHost();
+            if (maxTasksPerHost != NO_HOST_LIMIT && host != null) {
+                Integer active = activeTasksByHost.get(host);
+                if (active == null || active <= 1) activeTasksByHost.remove(host);
+                else activeTasksByHost.put(host, active - 1);
+                notifyAll();
+            }
+        }
+    }
+}
\ No newline at end of file
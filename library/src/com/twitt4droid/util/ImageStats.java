@@ -0,0 +1,269 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.util;
+
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Statistics of the image caches and downloads made by {@link Images} since the process started
+ * or since the last {@link #reset()}. All the counters are lock free, so recording them is cheap
+ * enough to be always on. Use it like this:
+ * <pre>
+ * {@code
+ * ImageStats stats = Images.getStats();
+ * float memoryHitRate = stats.getMemoryHitCount() / (float) (stats.getMemoryHitCount() + stats.getMemoryMissCount());
+ * stats.dump(); // logcat
+ * }
+ * </pre>
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public final class ImageStats {
+
+    private static final String TAG = ImageStats.class.getSimpleName();
+    private static final long[] LATENCY_BUCKET_BOUNDS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+    private final AtomicLong memoryHitCount = new AtomicLong();
+    private final AtomicLong memoryMissCount = new AtomicLong();
+    private final AtomicLong memoryEvictionCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+    private final AtomicLong diskStaleCount = new AtomicLong();
+    private final AtomicLong diskMissCount = new AtomicLong();
+    private final AtomicLong downloadCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong downloadFailureCount = new AtomicLong();
+    private final AtomicLong downloadedBytes = new AtomicLong();
+    private final AtomicLongArray decodeLatencies = new AtomicLongArray(LATENCY_BUCKET_BOUNDS_MILLIS.length + 1);
+    private final AtomicLongArray downloadLatencies = new AtomicLongArray(LATENCY_BUCKET_BOUNDS_MILLIS.length + 1);
+
+    /** Package-private, the instance is owned by {@link Images}. */
+    ImageStats() { }
+
+    /** @return the upper bounds, in milliseconds, of the latency histogram buckets but the last one. */
+    public static long[] getLatencyBucketBoundsMillis() {
+        return LATENCY_BUCKET_BOUNDS_MILLIS.clone();
+    }
+
+    /** @return how many memory cache lookups found the bitmap. */
+    public long getMemoryHitCount() {
+        return memoryHitCount.get();
+    }
+
+    /** @return how many memory cache lookups didn't find the bitmap. */
+    public long getMemoryMissCount() {
+        return memoryMissCount.get();
+    }
+
+    /** @return how many bitmaps were evicted from the memory cache to make room. */
+    public long getMemoryEvictionCount() {
+        return memoryEvictionCount.get();
+    }
+
+    /** @return how many disk cache lookups found a fresh image. */
+    public long getDiskHitCount() {
+        return diskHitCount.get();
+    }
+
+    /** @return how many disk cache lookups found an image that had to be revalidated. */
+    public long getDiskStaleCount() {
+        return diskStaleCount.get();
+    }
+
+    /** @return how many disk cache lookups didn't find the image. */
+    public long getDiskMissCount() {
+        return diskMissCount.get();
+    }
+
+    /** @return how many images were downloaded. */
+    public long getDownloadCount() {
+        return downloadCount.get();
+    }
+
+    /** @return how many revalidations were answered with 304 Not Modified. */
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    /** @return how many downloads failed. */
+    public long getDownloadFailureCount() {
+        return downloadFailureCount.get();
+    }
+
+    /** @return how many image bytes were downloaded. */
+    public long getDownloadedBytes() {
+        return downloadedBytes.get();
+    }
+
+    /**
+     * @return how many decodes fell in each bucket of {@link #getLatencyBucketBoundsMillis()}; the
+     *         last element counts the decodes slower than the last bound.
+     */
+    public long[] getDecodeLatencyHistogram() {
+        return toArray(decodeLatencies);
+    }
+
+    /**
+     * @return how many downloads and revalidations fell in each bucket of
+     *         {@link #getLatencyBucketBoundsMillis()}; the last element counts the ones slower than
+     *         the last bound.
+     */
+    public long[] getDownloadLatencyHistogram() {
+        return toArray(downloadLatencies);
+    }
+
+    /** Sets all the counters to zero. */
+    public void reset() {
+        memoryHitCount.set(0);
+        memoryMissCount.set(0);
+        memoryEvictionCount.set(0);
+        diskHitCount.set(0);
+        diskStaleCount.set(0);
+        diskMissCount.set(0);
+        downloadCount.set(0);
+        notModifiedCount.set(0);
+        downloadFailureCount.set(0);
+        downloadedBytes.set(0);
+        for (int i = 0; i < decodeLatencies.length(); i++) {
+            decodeLatencies.set(i, 0);
+            downloadLatencies.set(i, 0);
+        }
+    }
+
+    /** Writes these statistics to logcat. */
+    public void dump() {
+        Log.i(TAG, toString());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder()
+            .append("memory: hits=").append(getMemoryHitCount())
+            .append(" misses=").append(getMemoryMissCount())
+            .append(" evictions=").append(getMemoryEvictionCount())
+            .append("\ndisk: hits=").append(getDiskHitCount())
+            .append(" stale=").append(getDiskStaleCount())
+            .append(" misses=").append(getDiskMissCount())
+            .append("\nnetwork: downloads=").append(getDownloadCount())
+            .append(" notModified=").append(getNotModifiedCount())
+            .append(" failures=").append(getDownloadFailureCount())
+            .append(" bytes=").append(getDownloadedBytes())
+            .append("\ndecode ms: ");
+        appendHistogram(builder, decodeLatencies);
+        builder.append("\ndownload ms: ");
+        appendHistogram(builder, downloadLatencies);
+        return builder.toString();
+    }
+
+    /** @param isHit if a memory cache lookup found the bitmap. */
+    void recordMemoryLookup(boolean isHit) {
+        (isHit ? memoryHitCount : memoryMissCount).incrementAndGet();
+    }
+
+    /** Records a memory cache eviction. */
+    void recordMemoryEviction() {
+        memoryEvictionCount.incrementAndGet();
+    }
+
+    /** Records a disk cache lookup that found a fresh image. */
+    void recordDiskHit() {
+        diskHitCount.incrementAndGet();
+    }
+
+    /** Records a disk cache lookup that found an image that must be revalidated. */
+    void recordDiskStale() {
+        diskStaleCount.incrementAndGet();
+    }
+
+    /** Records a disk cache lookup that didn't find the image. */
+    void recordDiskMiss() {
+        diskMissCount.incrementAndGet();
+    }
+
+    /**
+     * Records a finished download.
+     * 
+     * @param bytes the downloaded bytes or {@code 0} if it was answered with 304 Not Modified.
+     * @param isNotModified if it was answered with 304 Not Modified.
+     * @param startNanos when the download started, from {@link System#nanoTime()}.
+     */
+    void recordDownload(int bytes, boolean isNotModified, long startNanos) {
+        (isNotModified ? notModifiedCount : downloadCount).incrementAndGet();
+        downloadedBytes.addAndGet(bytes);
+        record(downloadLatencies, startNanos);
+    }
+
+    /**
+     * Records a failed download.
+     * 
+     * @param startNanos when the download started, from {@link System#nanoTime()}.
+     */
+    void recordDownloadFailure(long startNanos) {
+        downloadFailureCount.incrementAndGet();
+        record(downloadLatencies, startNanos);
+    }
+
+    /**
+     * Records a decode.
+     * 
+     * @param startNanos when the decode started, from {@link System#nanoTime()}.
+     */
+    void recordDecode(long startNanos) {
+        record(decodeLatencies, startNanos);
+    }
+
+    /**
+     * Adds the time elapsed since the given start to the given histogram.
+     * 
+     * @param histogram a latency histogram.
+     * @param startNanos the start time, from {@link System#nanoTime()}.
+     */
+    private static void record(AtomicLongArray histogram, long startNanos) {
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1000000L;
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKET_BOUNDS_MILLIS.length && elapsedMillis >= LATENCY_BUCKET_BOUNDS_MILLIS[bucket]) bucket++;
+        histogram.incrementAndGet(bucket);
+    }
+
+    /**
+     * @param histogram a latency histogram.
+     * @return a copy of the given histogram.
+     */
+    private static long[] toArray(AtomicLongArray histogram) {
+        long[] values = new long[histogram.length()];
+        for (int i = 0; i < values.length; i++) values[i] = histogram.get(i);
+        return values;
+    }
+
+    /**
+     * Appends the given histogram as "&lt;bound:count ...".
+     * 
+     * @param builder where to append.
+     * @param histogram a latency histogram.
+     */
+    private static void appendHistogram(StringBuilder builder, AtomicLongArray histogram) {
+        for (int i = 0; i < histogram.length(); i++) {
+            if (i > 0) builder.append(' ');
+            if (i < LATENCY_BUCKET_BOUNDS_MILLIS.length) builder.append('<').append(LATENCY_BUCKET_BOUNDS_MILLIS[i]);
+            else builder.append(">=").append(LATENCY_BUCKET_BOUNDS_MILLIS[i - 1]);
+            builder.append(':').append(histogram.get(i));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picks the size variant of Twitter profile images and banners that best fits a target size.
+ * Twitter serves each profile image as {@code _mini} (24px), {@code _normal} (48px),
+ * {@code _bigger} (73px) and the original upload, and each banner as {@code /mobile} (320px),
+ * {@code /web} (520px), {@code /mobile_retina} (640px) and {@code /web_retina} (1040px) wide.
+ * Urls that don't follow these patterns are left untouched.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public final class ImageVariants {
+
+    private static final String PROFILE_IMAGES_PATH = "/profile_images/";
+    private static final String PROFILE_BANNERS_PATH = "/profile_banners/";
+    private static final String[] PROFILE_IMAGE_SUFFIXES = { "_mini", "_normal", "_bigger", "" };
+    private static final int[] PROFILE_IMAGE_SIZES = { 24, 48, 73, Integer.MAX_VALUE };
+    private static final String[] BANNER_SUFFIXES = { "/mobile", "/web", "/mobile_retina", "/web_retina" };
+    private static final int[] BANNER_WIDTHS = { 320, 520, 640, 1040 };
+
+    /**
+     * Default constructor. Do NOT try to initialize this class, it is suppose
+     * to be an static utility.
+     */
+    private ImageVariants() {
+        throw new IllegalAccessError("This class cannot be instantiated nor extended");
+    }
+
+    /**
+     * Picks the smallest variant of the given url that is at least 3/4 of the target size. A
+     * slightly upscaled avatar is indistinguishable while the next variant may be many times
+     * bigger (the original upload is usually 400px or more).
+     * 
+     * @param url a profile image or banner url of any size.
+     * @param targetSize the width, in pixels, of the view where the image is shown or {@code 0}
+     *        to keep the given url.
+     * @return the url of the best variant or the given url if it isn't a known Twitter image url.
+     */
+    public static String select(String url, int targetSize) {
+        if (targetSize <= 0) return url;
+        Variant variant = Variant.parse(url);
+        if (variant == null) return url;
+        int minSize = targetSize * 3 / 4;
+        for (int index = 0; index < variant.sizes.length; index++) {
+            if (variant.sizes[index] >= minSize) return variant.build(index);
+        }
+        return variant.build(variant.sizes.length - 1);
+    }
+
+    /**
+     * @param url a profile image or banner url.
+     * @return the urls of the bigger variants of the given url, from the smallest to the biggest,
+     *         or an empty list if it isn't a known Twitter image url.
+     */
+    static List<String> biggerVariants(String url) {
+        Variant variant = Variant.parse(url);
+        if (variant == null) return Collections.emptyList();
+        List<String> urls = new ArrayList<>(variant.sizes.length - variant.index - 1);
+        for (int index = variant.index + 1; index < variant.sizes.length; index++) urls.add(variant.build(index));
+        return urls;
+    }
+
+    /**
+     * @param url a profile image or banner url.
+     * @return the width, in pixels, of the given variant or {@code 0} if it is the original
+     *         upload or it isn't a known Twitter image url.
+     */
+    static int widthOf(String url) {
+        Variant variant = Variant.parse(url);
+        if (variant == null || variant.sizes[variant.index] == Integer.MAX_VALUE) return 0;
+        return variant.sizes[variant.index];
+    }
+
+    /**
+     * A Twitter image url split in the part before the size suffix, the size suffix and the part
+     * after it.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private static final class Variant {
+
+        private final String prefix;
+        private final String extension;
+        private final String[] suffixes;
+        private final int[] sizes;
+        private final int index;
+
+        /**
+         * Creates a Variant.
+         * 
+         * @param prefix the url part before the size suffix.
+         * @param extension the url part after the size suffix.
+         * @param suffixes the size suffixes of this kind of image.
+         * @param sizes the widths of each suffix.
+         * @param index the suffix index of this variant.
+         */
+        private Variant(String prefix, String extension, String[] suffixes, int[] sizes, int index) {
+            this.prefix = prefix;
+            this.extension = extension;
+            this.suffixes = suffixes;
+            this.sizes = sizes;
+            this.index = index;
+        }
+
+        /**
+         * @param url an url.
+         * @return the Variant of the given url or {@code null} if it isn't a known Twitter image
+         *         url.
+         */
+        private static Variant parse(String url) {
+            if (Strings.isNullOrBlank(url)) return null;
+            int slash = url.lastIndexOf('/');
+            if (url.contains(PROFILE_BANNERS_PATH)) {
+                String suffix = url.substring(slash);
+                for (int index = 0; index < BANNER_SUFFIXES.length; index++) {
+                    if (BANNER_SUFFIXES[index].equals(suffix)) {
+                        return new Variant(url.substring(0, slash), "", BANNER_SUFFIXES, BANNER_WIDTHS, index);
+                    }
+                }
+            } else if (url.contains(PROFILE_IMAGES_PATH)) {
+                int dot = url.lastIndexOf('.');
+                if (dot < slash) dot = url.length();
+                String name = url.substring(0, dot);
+                for (int index = 0; index < PROFILE_IMAGE_SUFFIXES.length; index++) {
+                    String suffix = PROFILE_IMAGE_SUFFIXES[index];
+                    if (name.endsWith(suffix)) {
+                        return new Variant(name.substring(0, name.length() - suffix.length()), url.substring(dot), PROFILE_IMAGE_SUFFIXES, PROFILE_IMAGE_SIZES, index);
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param index a suffix index.
+         * @return the url of the variant with the given suffix index.
+         */
+        private String build(int index) {
+            return prefix + suffixes[index] + extension;
+        }
+    }
+}
\ No newline at end of file
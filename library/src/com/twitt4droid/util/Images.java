@@ -15,29 +15,39 @@
  */
 package com.twitt4droid.util;
 
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.CompressFormat;
 import android.graphics.BitmapFactory;
-import android.os.AsyncTask;
-import android.os.Environment;
+import android.graphics.Color;
+import android.os.Build;
 import android.support.v4.util.LruCache;
 import android.util.Log;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import com.jakewharton.disklrucache.DiskLruCache;
+import com.twitt4droid.R;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.math.BigInteger;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Images class contains miscellaneous image utility methods.
@@ -48,17 +58,79 @@ import java.security.NoSuchAlgorithmException;
 public final class Images {
 
     private static final String TAG = Images.class.getSimpleName();
-    private static final String IMAGE_CACHE_DIR = "images";
+    private static final String DISK_KEY_ALGORITHM = "SHA-256";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance(DISK_KEY_ALGORITHM);
+            } catch (NoSuchAlgorithmException ex) {
+                Log.e(TAG, "Couldn't get " + DISK_KEY_ALGORITHM + " digest", ex);
+                return null;
+            }
+        }
+    };
+    private static final ThreadLocal<char[]> HEX_BUFFER = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[64];
+        }
+    };
+    private static final long DISK_CACHE_FLUSH_DELAY_SECONDS = 5;
+    private static final int DISK_CACHE_VERSION = 2;
+    private static final int DISK_CACHE_VALUE_COUNT = 2;
+    private static final int DATA_INDEX = 0;
+    private static final int CACHE_INFO_INDEX = 1;
+    private static final ScheduledExecutorService DISK_EXECUTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "twitt4droid-image-disk");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private static final ImageStats STATS = new ImageStats();
+    private static final ImageScheduler SCHEDULER = new ImageScheduler(new ImageScheduler.Stages() {
+
+        @Override
+        public Bitmap loadFromMemory(String url) {
+            return MEM_CACHE.get(url);
+        }
+
+        @Override
+        public Bitmap loadFromCache(String url) {
+            return Images.loadFromCache(url, false);
+        }
+
+        @Override
+        public byte[] download(String url) throws IOException {
+            return Images.download(url);
+        }
+
+        @Override
+        public Bitmap decode(String url, byte[] data) {
+            return Images.decode(url, data);
+        }
+    });
     private static final LruCache<String, Bitmap> MEM_CACHE;
-    private static DiskLruCache DISK_CACHE;
+
+    private static volatile ImageCacheConfig cacheConfig;
     
     static {
+        // Resized when the cache configuration is known
         int cacheSize = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8) ;
         MEM_CACHE = new LruCache<String, Bitmap>(cacheSize) {
             @Override
             protected int sizeOf(String key, Bitmap bitmap) {
                 return bitmap.getRowBytes() * bitmap.getHeight() / 1024;
             }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted) STATS.recordMemoryEviction();
+            }
         };
     }
 
@@ -71,160 +143,527 @@ public final class Images {
     }
 
     /**
-     * Initializes the disk cache when is closed or null.
+     * Starts opening the disk cache in background if it hasn't been opened yet. This method
+     * returns immediately; lookups made before the disk cache is ready skip it and go to the
+     * network. It is safe to call it from any thread and as many times as needed.
      * 
      * @param context the application context.
      */
-    private static void intDiskCacheIfNeeded(Context context) {
-        if (DISK_CACHE == null || DISK_CACHE.isClosed()) {
-            try {
-                long size = 1024 * 1024 * 10;
-                String cachePath = 
-                        Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState()) || Files.isExternalStorageRemovable()
-                        ? Files.getExternalCacheDir(context).getPath() 
-                        : context.getCacheDir().getPath();
-                File file = new File(cachePath + File.separator + IMAGE_CACHE_DIR);
-                DISK_CACHE = DiskLruCache.open(file, 1, 1, size); // Froyo sometimes fails to initialize
-            } catch (IOException ex) {
-                Log.e(TAG, "Couldn't init disk cache", ex);
+    public static void init(Context context) {
+        Context appContext = context.getApplicationContext();
+        if (cacheConfig == null) setCacheConfig(ImageCacheConfig.defaultConfig(appContext));
+        DiskCacheHolder.open(appContext);
+        AppStateCallbacks.registerIfNeeded(appContext);
+    }
+
+    /**
+     * Sets the image cache configuration. When not set {@link ImageCacheConfig#defaultConfig(Context)}
+     * is used. Budgets take effect immediately; the disk cache directory only takes effect if this
+     * method is called before the disk cache is opened by {@link #init(Context)}.
+     * 
+     * @param config an ImageCacheConfig.
+     */
+    public static void setCacheConfig(ImageCacheConfig config) {
+        cacheConfig = config;
+        MEM_CACHE.resize(Math.max(1, config.getMemoryCacheSize() / 1024));
+        DiskLruCache diskCache = DiskCacheHolder.get();
+        if (diskCache != null) diskCache.setMaxSize(config.getDiskCacheSize());
+    }
+
+    /** @return the current image cache configuration or {@code null} if it hasn't been set yet. */
+    public static ImageCacheConfig getCacheConfig() {
+        return cacheConfig;
+    }
+
+    /**
+     * Writes any pending disk cache journal records and trims the disk cache to its maximum size.
+     * This is done periodically after writes and when the app goes to the background
+     * (ICE_CREAM_SANDWICH+), call this method if you need it done right away (for example in
+     * {@code onStop} on older versions).
+     */
+    public static void flushDiskCache() {
+        DISK_EXECUTOR.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                DiskCacheHolder.flushNow();
             }
-        }
+        });
     }
 
     /**
      * Gets a bitmap, if exists, from the given url and stores in both memory cache and disk cache.
+     * This method blocks; use {@link #load(Context, String, ImageRequest.Priority, ImageRequest.OnImageLoadedListener)}
+     * or {@link ImageLoader} from the UI thread.
      * 
      * @param context the application context.
      * @param url an url.
      * @return a bitmap or {@code null}.
      */
     public static Bitmap getFromUrl(Context context, String url) {
-        String key = buildKey(url);
-        Bitmap cachedBitmap = getFromCache(context, key);
+        if (Strings.isNullOrBlank(url)) return null;
+        init(context);
+        Bitmap cachedBitmap = getFromMemoryCache(url);
+        if (cachedBitmap == null) cachedBitmap = loadFromCache(url, false);
         if (cachedBitmap != null) return cachedBitmap;
         
         try {
-            InputStream stream = new URL(url).openConnection().getInputStream();
-            Bitmap downloaded = BitmapFactory.decodeStream(stream);
-            saveInCache(context, key, downloaded);
-            return downloaded;
-        } catch (MalformedURLException ex) {
-            Log.e(TAG, "Invalid url " + url, ex);
+            byte[] data = download(url);
+            if (data != null) return decode(url, data);
         } catch (IOException ex) {
-            // Useless for now
+            Log.w(TAG, "Couldn't download " + url, ex);
         }
         
         return null;
     }
 
     /**
-     * Builds a key for given url.
+     * Loads the bitmap from the given url in background. Cached bitmaps are decoded in a decode
+     * thread; the rest are downloaded in a network thread, stored in the disk cache as they come
+     * and then decoded. Higher priority requests are served first.
+     * 
+     * @param context the application context.
+     * @param url an url.
+     * @param priority the request priority.
+     * @param listener notified in the UI thread when the request finishes or {@code null}.
+     * @return the ImageRequest or {@code null} if the url is blank.
+     */
+    public static ImageRequest load(Context context, String url, ImageRequest.Priority priority, ImageRequest.OnImageLoadedListener listener) {
+        if (Strings.isNullOrBlank(url)) return null;
+        STATS.recordMemoryLookup(MEM_CACHE.get(url) != null);
+        return submit(context, url, priority, listener);
+    }
+
+    /**
+     * Submits a request to the image scheduler without recording the memory cache lookup, for
+     * callers that already looked up the memory cache.
+     * 
+     * @param context the application context.
+     * @param url an url.
+     * @param priority the request priority.
+     * @param listener notified in the UI thread when the request finishes or {@code null}.
+     * @return the ImageRequest or {@code null} if the url is blank.
+     */
+    private static ImageRequest submit(Context context, String url, ImageRequest.Priority priority, ImageRequest.OnImageLoadedListener listener) {
+        if (Strings.isNullOrBlank(url)) return null;
+        init(context);
+        ImageRequest request = new ImageRequest(url, priority, listener);
+        SCHEDULER.submit(request);
+        return request;
+    }
+
+    /**
+     * Loads the bitmap from the given url with {@link ImageRequest.Priority#LOW} priority and
+     * stores it in both memory cache and disk cache, so it is ready when it's needed.
+     * 
+     * @param context the application context.
+     * @param url an url.
+     * @return the ImageRequest to cancel the prefetch or {@code null} if the bitmap is already in
+     *         memory.
+     */
+    public static ImageRequest prefetch(Context context, String url) {
+        if (Strings.isNullOrBlank(url) || MEM_CACHE.get(url) != null) return null;
+        return load(context, url, ImageRequest.Priority.LOW, null);
+    }
+
+    /**
+     * Tells the image scheduler if a list is flinging. While flinging the newest requests are
+     * served first because the rows of the older ones are probably off screen already.
+     * 
+     * @param isFlinging if a list is flinging.
+     */
+    public static void setFlinging(boolean isFlinging) {
+        SCHEDULER.setLifo(isFlinging);
+    }
+
+    /** @return the statistics of the image caches and downloads. */
+    public static ImageStats getStats() {
+        return STATS;
+    }
+
+    /**
+     * Downloads the given url and stores the data as is in the disk cache along with its HTTP
+     * validators. If there is a stale copy in the disk cache it is revalidated with a conditional
+     * GET; when the server answers 304 Not Modified or can't be reached, the stale copy is used.
      * 
      * @param url an url.
-     * @return a key.
+     * @return the downloaded data.
+     * @throws IOException if the download fails and there is no cached copy.
      */
-    private static String buildKey(String url) {
+    private static byte[] download(String url) throws IOException {
+        String diskKey = buildDiskKey(url);
+        ImageDownloader.CacheInfo cached = diskKey == null ? null : getCacheInfoFromDiskCache(diskKey);
+        ImageDownloader.Response response;
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            digest.update(url.getBytes());
-            byte[] data = digest.digest();
-            return String.format("%0" + (data.length * 2) + 'x', new BigInteger(1, data));
-        } catch (NoSuchAlgorithmException ex) { 
-            Log.e(TAG, "Couldn't encode url", ex);
+            response = downloadAndRecord(url, cached);
+        } catch (IOException ex) {
+            byte[] stale = cached == null ? null : getDataFromDiskCache(diskKey);
+            if (stale == null) throw ex;
+            Log.w(TAG, "Couldn't revalidate " + url + ", using cached copy", ex);
+            return stale;
         }
-        
-        return null;
+        if (response.isNotModified()) {
+            byte[] data = getDataFromDiskCache(diskKey);
+            if (data != null) {
+                saveInDiskCache(diskKey, null, null, response.getCacheInfo());
+                return data;
+            }
+            response = downloadAndRecord(url, null); // evicted while revalidating
+        }
+        if (diskKey != null && response.getCacheInfo().isStorable()) {
+            saveInDiskCache(diskKey, null, response.getData(), response.getCacheInfo());
+        }
+        return response.getData();
+    }
+
+    /**
+     * Downloads the given url recording the statistics.
+     * 
+     * @param url an url.
+     * @param cached the cache info of the cached copy to revalidate or {@code null}.
+     * @return the response.
+     * @throws IOException if the download fails.
+     */
+    private static ImageDownloader.Response downloadAndRecord(String url, ImageDownloader.CacheInfo cached) throws IOException {
+        long start = System.nanoTime();
+        try {
+            ImageDownloader.Response response = ImageDownloader.download(url, cached);
+            STATS.recordDownload(response.isNotModified() ? 0 : response.getData().length, response.isNotModified(), start);
+            return response;
+        } catch (IOException ex) {
+            STATS.recordDownloadFailure(start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Decodes the given encoded image and stores the bitmap in the memory cache.
+     * 
+     * @param url the url of the image.
+     * @param data the encoded image.
+     * @return a bitmap or {@code null} if it couldn't be decoded.
+     */
+    private static Bitmap decode(String url, byte[] data) {
+        long start = System.nanoTime();
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length);
+        STATS.recordDecode(start);
+        if (bitmap != null) MEM_CACHE.put(url, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Looks up the given url in the memory cache recording the statistics.
+     * 
+     * @param url an url.
+     * @return a bitmap or {@code null}.
+     */
+    private static Bitmap getFromMemoryCache(String url) {
+        Bitmap bitmap = MEM_CACHE.get(url);
+        STATS.recordMemoryLookup(bitmap != null);
+        return bitmap;
+    }
+
+    /**
+     * Builds the disk cache key for given url. The memory cache uses the url itself as key, so
+     * this is only computed when a lookup reaches the disk cache. DiskLruCache keys must match
+     * {@code [a-z0-9_-]{1,64}}, hence the lowercase hex SHA-256 digest. The digest and the hex
+     * buffer are reused per thread. Package-private for ImagesBenchmark.
+     * 
+     * @param url an url.
+     * @return a key or {@code null} if the url couldn't be encoded.
+     */
+    static String buildDiskKey(String url) {
+        MessageDigest digest = DIGEST.get();
+        if (digest == null) return null;
+        byte[] data = digest.digest(url.getBytes(UTF_8));
+        char[] hex = HEX_BUFFER.get();
+        for (int i = 0; i < data.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(data[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX_DIGITS[data[i] & 0x0f];
+        }
+        return new String(hex, 0, data.length * 2);
     }
 
     /** Clears both the memory cache and disk cache. */
     public static void clearCache() {
         MEM_CACHE.evictAll();
-        if (DISK_CACHE != null) {
+        DiskCacheHolder.delete();
+    }
+
+    /**
+     * Removes from the disk cache the images saved before the given age. The memory cache is
+     * left as it is. It walks the whole cache directory, so call it in a background thread.
+     * 
+     * @param maxAgeMillis the age, in milliseconds, of the oldest image to keep.
+     * @return how many images were removed.
+     */
+    public static int clearCacheOlderThan(long maxAgeMillis) {
+        DiskLruCache diskCache = DiskCacheHolder.get();
+        if (diskCache == null) return 0;
+        File[] files = diskCache.getDirectory().listFiles();
+        if (files == null) return 0;
+        long cutoff = System.currentTimeMillis() - maxAgeMillis;
+        String dataSuffix = "." + DATA_INDEX;
+        int removed = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(dataSuffix) || file.lastModified() >= cutoff) continue;
             try {
-                DISK_CACHE.delete();
-            } catch (IOException ex) { 
-                Log.e(TAG, "Couldn't clear disk cache", ex);
+                if (diskCache.remove(name.substring(0, name.length() - dataSuffix.length()))) removed++;
+            } catch (IOException ex) {
+                Log.e(TAG, "Couldn't remove " + name + " from disk cache", ex);
+            } catch (IllegalStateException ex) {
+                Log.w(TAG, "Disk cache closed while clearing it", ex);
+                break;
             }
         }
+        if (removed > 0) DiskCacheHolder.scheduleFlush();
+        return removed;
     }
 
     /**
-     * Returns the bitmap to which the specified key is mapped, or null if both the memory cache and
-     * disk cache contains no mapping for the key.
+     * Returns the bitmap to which the specified url is mapped, or null if both the memory cache and
+     * disk cache contains no mapping for the url. Stale disk cache entries are returned too.
      * 
      * @param context the application context.
-     * @param key the key whose associated value is to be returned.
+     * @param url the url whose associated bitmap is to be returned.
      * @return a bitmap or {@code null}.
      */
-    public static Bitmap getFromCache(Context context, String key) {
-        Bitmap bitmap = MEM_CACHE.get(key);
+    public static Bitmap getFromCache(Context context, String url) {
+        if (Strings.isNullOrBlank(url)) return null;
+        init(context);
+        Bitmap bitmap = getFromMemoryCache(url);
+        return bitmap != null ? bitmap : loadFromCache(url, true);
+    }
+
+    /**
+     * Returns the bitmap to which the specified url is mapped in the memory cache or, if it isn't
+     * there, in the disk cache. When neither has it but they have a bigger size variant of the
+     * same image (see {@link ImageVariants}), that variant is downscaled instead of downloading
+     * the requested one. The memory cache lookup isn't recorded in the statistics, the callers
+     * already recorded theirs; the disk cache lookup of the url is, the ones of its variants
+     * aren't.
+     * 
+     * @param url the url whose associated bitmap is to be returned.
+     * @param acceptStale if disk cache entries that must be revalidated can be returned.
+     * @return a bitmap or {@code null}.
+     */
+    private static Bitmap loadFromCache(String url, boolean acceptStale) {
+        Bitmap bitmap = MEM_CACHE.get(url);
         if (bitmap == null) {
-            bitmap = getFromDiskCache(context, key);
-            if (bitmap != null) MEM_CACHE.put(key, bitmap);
+            bitmap = getFromDiskCache(url, acceptStale, true);
+            if (bitmap == null) {
+                for (String biggerUrl : ImageVariants.biggerVariants(url)) {
+                    Bitmap bigger = MEM_CACHE.get(biggerUrl);
+                    if (bigger == null) bigger = getFromDiskCache(biggerUrl, acceptStale, false);
+                    if (bigger != null) {
+                        bitmap = downscale(bigger, ImageVariants.widthOf(url));
+                        break;
+                    }
+                }
+            }
+            if (bitmap != null) MEM_CACHE.put(url, bitmap);
         }
         return bitmap;
     }
 
     /**
-     * Associates the specified bitmap with the specified key in both memory cache and disk cache.
+     * Looks up the given url in the disk cache.
+     * 
+     * @param url an url.
+     * @param acceptStale if an entry that must be revalidated can be returned.
+     * @param isRecorded if the lookup is recorded in the statistics.
+     * @return a bitmap or {@code null}.
+     */
+    private static Bitmap getFromDiskCache(String url, boolean acceptStale, boolean isRecorded) {
+        String diskKey = buildDiskKey(url);
+        return diskKey == null ? null : getFromDiskCacheByKey(diskKey, acceptStale, isRecorded);
+    }
+
+    /**
+     * Scales the given bitmap down to the given width keeping its aspect ratio.
+     * 
+     * @param bitmap a bitmap.
+     * @param width the new width or {@code 0} to keep the bitmap as is.
+     * @return the scaled bitmap or the given one if it isn't wider than the given width.
+     */
+    private static Bitmap downscale(Bitmap bitmap, int width) {
+        if (width <= 0 || bitmap.getWidth() <= width) return bitmap;
+        int height = Math.max(1, Math.round(bitmap.getHeight() * width / (float) bitmap.getWidth()));
+        return Bitmap.createScaledBitmap(bitmap, width, height, true);
+    }
+
+    /**
+     * Associates the specified bitmap with the specified url in both memory cache and disk cache.
      * 
      * @param context the application context.
-     * @param key the key with which the specified value is to be associated
+     * @param url the url with which the specified bitmap is to be associated
      * @param bitmap the bitmap.
      */
-    public static void saveInCache(Context context, String key, Bitmap bitmap) {
-        if (!Strings.isNullOrBlank(key) && bitmap != null) {
-            MEM_CACHE.put(key, bitmap);
-            saveInDiskCache(context, key, bitmap);
+    public static void saveInCache(Context context, String url, Bitmap bitmap) {
+        if (!Strings.isNullOrBlank(url) && bitmap != null) {
+            MEM_CACHE.put(url, bitmap);
+            init(context);
+            String diskKey = buildDiskKey(url);
+            if (diskKey != null) saveInDiskCache(diskKey, bitmap);
         }
     }
 
     /**
      * Returns the bitmap to which the specified key is mapped, or null if the disk cache contains
-     * no mapping for the key.
+     * no mapping for the key or it is not ready yet. Lookups made before the disk cache is open
+     * aren't recorded in the statistics.
      * 
-     * @param context the application context.
      * @param key the key whose associated value is to be returned.
+     * @param acceptStale if an entry that must be revalidated can be returned.
+     * @param isRecorded if the lookup is recorded in the statistics.
      * @return a bitmap or {@code null}.
      */
-    private static Bitmap getFromDiskCache(Context context, String key) {
-        intDiskCacheIfNeeded(context);
-        DiskLruCache.Snapshot snapshot = null;
-        
+    private static Bitmap getFromDiskCacheByKey(String key, boolean acceptStale, boolean isRecorded) {
+        if (DiskCacheHolder.get() == null) return null;
+        DiskLruCache.Snapshot snapshot = getSnapshotFromDiskCache(key);
+        if (snapshot == null) {
+            if (isRecorded) STATS.recordDiskMiss();
+            return null;
+        }
         try {
-            snapshot = DISK_CACHE.get(key);
+            if (ImageDownloader.CacheInfo.decode(snapshot.getString(CACHE_INFO_INDEX)).isFresh()) {
+                if (isRecorded) STATS.recordDiskHit();
+            } else {
+                if (isRecorded) STATS.recordDiskStale();
+                if (!acceptStale) return null;
+            }
+            long start = System.nanoTime();
+            Bitmap bitmap = decodeStream(snapshot.getInputStream(DATA_INDEX));
+            STATS.recordDecode(start);
+            return bitmap;
         } catch (IOException ex) {
-            Log.e(TAG, "Couldn't get image from disk cache", ex);
+            Log.e(TAG, "Couldn't read image from disk cache", ex);
+            return null;
+        } catch (IllegalStateException ex) {
+            Log.w(TAG, "Disk cache closed while reading it", ex);
+            return null;
+        } finally {
+            snapshot.close();
         }
-        
-        if (snapshot != null) {
-            BufferedInputStream in = new BufferedInputStream(snapshot.getInputStream(0));
-            Bitmap bitmap = BitmapFactory.decodeStream(in);
+    }
+
+    /**
+     * Decodes the given disk cache stream. DiskLruCache snapshots are backed by files, so they are
+     * decoded straight from the file descriptor: the native decoder reads the file itself instead
+     * of copying it through Java buffers.
+     * 
+     * @param in a snapshot stream.
+     * @return a bitmap or {@code null} if it couldn't be decoded.
+     * @throws IOException if the file descriptor couldn't be read.
+     */
+    private static Bitmap decodeStream(InputStream in) throws IOException {
+        if (in instanceof FileInputStream) return BitmapFactory.decodeFileDescriptor(((FileInputStream) in).getFD());
+        return BitmapFactory.decodeStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * @param key a disk cache key.
+     * @return the cache info of the entry mapped to the specified key or {@code null} if there
+     *         is no such entry.
+     */
+    private static ImageDownloader.CacheInfo getCacheInfoFromDiskCache(String key) {
+        DiskLruCache.Snapshot snapshot = getSnapshotFromDiskCache(key);
+        if (snapshot == null) return null;
+        try {
+            return ImageDownloader.CacheInfo.decode(snapshot.getString(CACHE_INFO_INDEX));
+        } catch (IOException ex) {
+            Log.e(TAG, "Couldn't read cache info from disk cache", ex);
+            return null;
+        } finally {
             snapshot.close();
-            return bitmap;
         }
-        
-        return null;
     }
 
     /**
-     * Associates the specified bitmap with the specified key in the disk cache.
+     * @param key a disk cache key.
+     * @return the encoded image mapped to the specified key or {@code null} if there is no such
+     *         entry.
+     */
+    private static byte[] getDataFromDiskCache(String key) {
+        DiskLruCache.Snapshot snapshot = getSnapshotFromDiskCache(key);
+        if (snapshot == null) return null;
+        try {
+            InputStream in = snapshot.getInputStream(DATA_INDEX);
+            byte[] data = new byte[(int) snapshot.getLength(DATA_INDEX)];
+            int offset = 0;
+            int count;
+            while (offset < data.length && (count = in.read(data, offset, data.length - offset)) != -1) offset += count;
+            return offset == data.length ? data : null;
+        } catch (IOException ex) {
+            Log.e(TAG, "Couldn't read image from disk cache", ex);
+            return null;
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    /**
+     * @param key a disk cache key.
+     * @return a snapshot of the entry mapped to the specified key or {@code null} if there is no
+     *         such entry, the disk cache is not ready yet or it was closed by a clear.
+     */
+    private static DiskLruCache.Snapshot getSnapshotFromDiskCache(String key) {
+        DiskLruCache diskCache = DiskCacheHolder.get();
+        if (diskCache == null) return null;
+        try {
+            return diskCache.get(key);
+        } catch (IOException ex) {
+            Log.e(TAG, "Couldn't get image from disk cache", ex);
+            return null;
+        } catch (IllegalStateException ex) {
+            Log.w(TAG, "Disk cache closed while reading it", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Associates the specified bitmap with the specified key in the disk cache. Does nothing if
+     * the disk cache is not ready yet.
      * 
-     * @param context the application context.
      * @param key the key with which the specified value is to be associated
      * @param bitmap the bitmap.
      */
-    private static void saveInDiskCache(Context context, String key, Bitmap bitmap) {
-        intDiskCacheIfNeeded(context);
+    private static void saveInDiskCache(String key, Bitmap bitmap) {
+        saveInDiskCache(key, bitmap, null, ImageDownloader.CacheInfo.NONE);
+    }
+
+    /**
+     * Associates the specified bitmap or encoded image and cache info with the specified key in
+     * the disk cache. When neither bitmap nor data are given only the cache info of the existing
+     * entry is updated. Does nothing if the disk cache is not ready yet.
+     * 
+     * @param key the key with which the specified value is to be associated
+     * @param bitmap the bitmap to encode or {@code null}.
+     * @param data the encoded image, stored as is so it doesn't have to be encoded again, or
+     *        {@code null}.
+     * @param cacheInfo the HTTP validators and freshness of the image.
+     */
+    private static void saveInDiskCache(String key, Bitmap bitmap, byte[] data, ImageDownloader.CacheInfo cacheInfo) {
+        DiskLruCache diskCache = DiskCacheHolder.get();
+        if (diskCache == null) return;
         DiskLruCache.Editor editor = null;
         OutputStream out = null;
         try {
-            editor = DISK_CACHE.edit(key);
+            editor = diskCache.edit(key);
             if (editor != null) { // Froyo fix
-                out = new BufferedOutputStream(editor.newOutputStream(0));
-                if (bitmap.compress(CompressFormat.JPEG, 100, out)) {
-                    DISK_CACHE.flush();
+                boolean isWritten = true;
+                if (data != null || bitmap != null) {
+                    out = new BufferedOutputStream(editor.newOutputStream(DATA_INDEX));
+                    if (data != null) out.write(data);
+                    else isWritten = bitmap.compress(CompressFormat.JPEG, 100, out);
+                    out.close();
+                    out = null;
+                }
+                editor.set(CACHE_INFO_INDEX, cacheInfo.encode());
+                if (isWritten) {
                     editor.commit();
+                    DiskCacheHolder.scheduleFlush();
                 } else editor.abort();
             }
         } catch (IOException ex) {
@@ -236,6 +675,10 @@ public final class Images {
                     Log.e(TAG, "Couldn't abort saving", ex2);
                 }
             }
+        } catch (IllegalStateException ex) {
+            // the entry was evicted before updating it or a clear closed the cache; either way
+            // the edit is dropped
+            Log.w(TAG, "Disk cache entry evicted or cache closed before saving it", ex);
         } finally {
             if (out != null) {
                 try {
@@ -248,16 +691,197 @@ public final class Images {
     }
 
     /**
-     * Loades an bitmap from any url asynchronously and the sets the bitmap in the given ImageView. 
+     * Holds the disk cache. The cache is opened only once, in the disk thread, and published
+     * through a volatile field so readers either see {@code null} or a fully opened cache.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private static final class DiskCacheHolder {
+
+        private static final AtomicBoolean IS_OPEN_REQUESTED = new AtomicBoolean();
+        private static final AtomicBoolean IS_FLUSH_SCHEDULED = new AtomicBoolean();
+        private static final Runnable FLUSH_TASK = new Runnable() {
+
+            @Override
+            public void run() {
+                flushNow();
+            }
+        };
+
+        private static volatile DiskLruCache diskCache;
+        private static volatile Context context;
+
+        /** @return the disk cache if it's open; otherwise {@code null}. */
+        private static DiskLruCache get() {
+            DiskLruCache cache = diskCache;
+            return cache == null || cache.isClosed() ? null : cache;
+        }
+
+        /**
+         * Requests opening the disk cache in background unless it was already requested.
+         * 
+         * @param appContext the application context.
+         */
+        private static void open(Context appContext) {
+            if (IS_OPEN_REQUESTED.compareAndSet(false, true)) {
+                context = appContext;
+                DISK_EXECUTOR.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        openNow();
+                    }
+                });
+            }
+        }
+
+        /** Opens the disk cache in the current thread. */
+        private static void openNow() {
+            try {
+                ImageCacheConfig config = cacheConfig;
+                diskCache = DiskLruCache.open(config.getDiskCacheDir(), DISK_CACHE_VERSION, DISK_CACHE_VALUE_COUNT, config.getDiskCacheSize());
+            } catch (IOException ex) {
+                Log.e(TAG, "Couldn't init disk cache", ex); // Froyo sometimes fails to initialize
+                IS_OPEN_REQUESTED.set(false); // let the next request retry
+            }
+        }
+
+        /**
+         * Schedules a journal flush unless one is already pending. DiskLruCache already writes
+         * the DIRTY and CLEAN records of each edit to the journal; what stays buffered are the
+         * READ records that keep the LRU order. Losing them in a crash only changes which entries
+         * are evicted first, the size accounting is rebuilt from the edit records, so eviction
+         * stays correct.
+         */
+        private static void scheduleFlush() {
+            if (IS_FLUSH_SCHEDULED.compareAndSet(false, true)) {
+                DISK_EXECUTOR.schedule(FLUSH_TASK, DISK_CACHE_FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+
+        /** Flushes the disk cache journal in the current thread. */
+        private static void flushNow() {
+            IS_FLUSH_SCHEDULED.set(false);
+            DiskLruCache cache = get();
+            if (cache != null) {
+                try {
+                    cache.flush();
+                } catch (IOException ex) {
+                    Log.e(TAG, "Couldn't flush disk cache", ex);
+                } catch (IllegalStateException ex) {
+                    Log.w(TAG, "Disk cache closed while flushing", ex);
+                }
+            }
+        }
+
+        /**
+         * Deletes the disk cache contents and opens it again in background. If the disk cache
+         * isn't open, because it's still opening or it failed to open, the files in the
+         * configured cache directory are deleted instead.
+         */
+        private static void delete() {
+            DiskLruCache cache = diskCache;
+            if (cache != null) {
+                diskCache = null;
+                try {
+                    cache.delete();
+                } catch (IOException ex) { 
+                    Log.e(TAG, "Couldn't clear disk cache", ex);
+                }
+                IS_OPEN_REQUESTED.set(false);
+                if (context != null) open(context);
+            } else {
+                ImageCacheConfig config = cacheConfig;
+                if (config != null && !deleteContents(config.getDiskCacheDir())) Log.e(TAG, "Couldn't clear disk cache directory " + config.getDiskCacheDir());
+            }
+        }
+
+        /**
+         * Deletes the contents of the given directory recursively.
+         * 
+         * @param dir a directory.
+         * @return if everything was deleted.
+         */
+        private static boolean deleteContents(File dir) {
+            File[] files = dir.listFiles();
+            if (files == null) return true; // missing or not a directory
+            boolean isDeleted = true;
+            for (File file : files) {
+                if (file.isDirectory() && !deleteContents(file)) isDeleted = false;
+                if (!file.delete() && file.exists()) isDeleted = false;
+            }
+            return isDeleted;
+        }
+    }
+
+    /**
+     * Listens to the application state to flush the disk cache journal when the UI is hidden and
+     * to shrink the memory cache when the system asks to trim memory.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static final class AppStateCallbacks implements ComponentCallbacks2 {
+
+        private static final AtomicBoolean IS_REGISTERED = new AtomicBoolean();
+
+        /**
+         * Registers the callbacks in the given application context (ICE_CREAM_SANDWICH+) if they
+         * weren't registered already.
+         * 
+         * @param appContext the application context.
+         */
+        private static void registerIfNeeded(Context appContext) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH 
+                    && IS_REGISTERED.compareAndSet(false, true)) {
+                appContext.registerComponentCallbacks(new AppStateCallbacks());
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        @SuppressLint("InlinedApi")
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_UI_HIDDEN) flushDiskCache();
+            if (level >= TRIM_MEMORY_MODERATE) MEM_CACHE.evictAll();
+            else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) MEM_CACHE.trimToSize(MEM_CACHE.maxSize() / 2);
+            else if (level == TRIM_MEMORY_RUNNING_CRITICAL) MEM_CACHE.trimToSize(MEM_CACHE.maxSize() / 4);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) { }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onLowMemory() {
+            MEM_CACHE.evictAll();
+        }
+    }
+
+    /**
+     * Loades an bitmap from any url asynchronously and the sets the bitmap in the given ImageView.
+     * Requests are scheduled with {@link ImageRequest.Priority#HIGH} priority by default. When the
+     * ImageView is reused for another url (for example in a ListView), the previous request is
+     * cancelled and its result is ignored. Bitmaps already in the memory cache are set right away
+     * without showing the placeholder; only memory cache misses are dispatched to background
+     * threads.
      * 
      * @author Daniel Pedraza-Arcega
      * @since version 1.0
      */
-    public static class ImageLoader extends AsyncTask<String, Void, Bitmap> {
+    public static class ImageLoader {
+
+        /** Target size that loads the given url as is, without picking a size variant. */
+        public static final int URL_AS_IS = 0;
 
         private ImageView imageView;
         private Integer loadingResourceImageId;
         private Integer loadingColorId;
+        private ImageRequest.Priority priority;
+        private Integer targetSize;
         private Context context;
 
         /**
@@ -267,6 +891,8 @@ public final class Images {
          */
         public ImageLoader(Context context) {
             this.context = context;
+            this.priority = ImageRequest.Priority.HIGH;
+            Images.init(context);
         }
 
         /**
@@ -302,27 +928,87 @@ public final class Images {
             return this;
         }
 
-        /** {@inheritDoc} */
-        @Override
-        protected void onPreExecute() {
+        /**
+         * Sets the request priority.
+         * 
+         * @param priority the request priority.
+         * @return this ImageLoader.
+         */
+        public ImageLoader setPriority(ImageRequest.Priority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Sets the width, in pixels, used to pick the size variant of Twitter profile images and
+         * banners (see {@link ImageVariants}). When not set, the width of the ImageView layout is
+         * used or, if it isn't fixed, the screen width.
+         * 
+         * @param targetSize a width in pixels or {@link #URL_AS_IS}.
+         * @return this ImageLoader.
+         */
+        public ImageLoader setTargetSize(int targetSize) {
+            this.targetSize = targetSize;
+            return this;
+        }
+
+        /**
+         * Loads the given url, or its best size variant, and sets the bitmap in the ImageView.
+         * Must be called in the UI thread.
+         * 
+         * @param url an url.
+         * @return the ImageRequest or {@code null} if the url is blank or the bitmap was in the
+         *         memory cache.
+         */
+        public ImageRequest execute(String url) {
+            url = ImageVariants.select(url, targetSize != null ? targetSize : guessTargetSize());
+            ImageRequest previous = (ImageRequest) imageView.getTag(R.id.twitt4droid_image_request);
+            if (previous != null) {
+                if (!previous.isDone() && previous.getUrl().equals(url)) return previous;
+                previous.cancel();
+                imageView.setTag(R.id.twitt4droid_image_request, null);
+            }
+            Bitmap cached = Strings.isNullOrBlank(url) ? null : getFromMemoryCache(url);
+            if (cached != null) {
+                setBitmap(imageView, cached, loadingColorId != null);
+                return null;
+            }
             if (loadingResourceImageId != null) imageView.setImageResource(loadingResourceImageId);
             if (loadingColorId != null) imageView.setBackgroundColor(context.getResources().getColor(loadingColorId));
+            final ImageView target = imageView;
+            final boolean hasLoadingColor = loadingColorId != null;
+            ImageRequest request = submit(context, url, priority, new ImageRequest.OnImageLoadedListener() {
+
+                @Override
+                public void onImageLoaded(ImageRequest request, Bitmap bitmap) {
+                    if (target.getTag(R.id.twitt4droid_image_request) != request) return;
+                    target.setTag(R.id.twitt4droid_image_request, null);
+                    if (bitmap != null) setBitmap(target, bitmap, hasLoadingColor);
+                }
+            });
+            imageView.setTag(R.id.twitt4droid_image_request, request);
+            return request;
         }
 
-        /** {@inheritDoc} */
-        @Override
-        protected Bitmap doInBackground(String... param) {
-            return getFromUrl(context, param[0]);
+        /**
+         * Sets the given bitmap in the given ImageView. The loading color, which an earlier load
+         * may have left if the ImageView was recycled, is cleared.
+         * 
+         * @param target an ImageView.
+         * @param bitmap the bitmap.
+         * @param hasLoadingColor if a loading color is used.
+         */
+        private static void setBitmap(ImageView target, Bitmap bitmap, boolean hasLoadingColor) {
+            target.setImageBitmap(bitmap);
+            if (hasLoadingColor) target.setBackgroundColor(Color.TRANSPARENT);
         }
 
-        /** {@inheritDoc} */
-        @Override
-        protected void onPostExecute(Bitmap result) {
-            if (result != null) imageView.setImageBitmap(result);
-            imageView = null;
-            loadingResourceImageId = null;
-            loadingColorId = null;
-            context = null;
+        /** @return the ImageView fixed or current width or the screen width. */
+        private int guessTargetSize() {
+            ViewGroup.LayoutParams params = imageView.getLayoutParams();
+            if (params != null && params.width > 0) return params.width;
+            if (imageView.getWidth() > 0) return imageView.getWidth();
+            return context.getResources().getDisplayMetrics().widthPixels;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.util;
+
+import org.json.JSONException;
+
+/**
+ * Streaming encoder and decoder for the flat JSON objects twitt4droid stores as snapshots (the
+ * current user, for example). Unlike {@code org.json.JSONObject} no tree is built: fields are
+ * written and read one at a time, strings are escaped properly and {@code null} is kept as
+ * {@code null}. {@code android.util.JsonReader} would do the same but needs HONEYCOMB+. Use it
+ * like this:
+ * <pre>
+ * {@code
+ * String json = new Json.ObjectWriter()
+ *     .put("id", user.getId())
+ *     .put("name", user.getName())
+ *     .toString();
+ * Json.ObjectReader reader = new Json.ObjectReader(json);
+ * while (reader.hasNext()) {
+ *     String field = reader.nextName();
+ *     if ("id".equals(field)) id = reader.nextLong();
+ *     else if ("name".equals(field)) name = reader.nextString();
+ *     else reader.skipValue();
+ * }
+ * }
+ * </pre>
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public final class Json {
+
+    private static final String NULL = "null";
+    private static final String TRUE = "true";
+    private static final String FALSE = "false";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Default constructor. Do NOT try to initialize this class, it is suppose
+     * to be an static utility.
+     */
+    private Json() {
+        throw new IllegalAccessError("This class cannot be instantiated nor extended");
+    }
+
+    /**
+     * Writes a JSON object field by field.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static final class ObjectWriter {
+
+        private final StringBuilder builder;
+        private boolean isEmpty;
+        private boolean isClosed;
+
+        /** Creates an empty ObjectWriter. */
+        public ObjectWriter() {
+            builder = new StringBuilder(256).append('{');
+            isEmpty = true;
+        }
+
+        /**
+         * Writes a string field.
+         * 
+         * @param name the field name.
+         * @param value the field value or {@code null}.
+         * @return this ObjectWriter.
+         */
+        public ObjectWriter put(String name, String value) {
+            appendName(name);
+            if (value == null) builder.append(NULL);
+            else appendString(value);
+            return this;
+        }
+
+        /**
+         * Writes a number field.
+         * 
+         * @param name the field name.
+         * @param value the field value.
+         * @return this ObjectWriter.
+         */
+        public ObjectWriter put(String name, long value) {
+            appendName(name);
+            builder.append(value);
+            return this;
+        }
+
+        /**
+         * Writes a boolean field.
+         * 
+         * @param name the field name.
+         * @param value the field value.
+         * @return this ObjectWriter.
+         */
+        public ObjectWriter put(String name, boolean value) {
+            appendName(name);
+            builder.append(value ? TRUE : FALSE);
+            return this;
+        }
+
+        /**
+         * Closes the object; no more fields can be written after this.
+         * 
+         * @return the JSON object.
+         */
+        @Override
+        public String toString() {
+            if (!isClosed) {
+                builder.append('}');
+                isClosed = true;
+            }
+            return builder.toString();
+        }
+
+        /**
+         * Appends the given field name and the separators around it.
+         * 
+         * @param name the field name.
+         */
+        private void appendName(String name) {
+            if (isClosed) throw new IllegalStateException("Object already closed");
+            if (!isEmpty) builder.append(',');
+            isEmpty = false;
+            appendString(name);
+            builder.append(':');
+        }
+
+        /**
+         * Appends the given string quoted and escaped.
+         * 
+         * @param value a string.
+         */
+        private void appendString(String value) {
+            builder.append('"');
+            int start = 0;
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                String escaped;
+                if (c == '"') escaped = "\\\"";
+                else if (c == '\\') escaped = "\\\\";
+                else if (c == '\n') escaped = "\\n";
+                else if (c == '\r') escaped = "\\r";
+                else if (c == '\t') escaped = "\\t";
+                else if (c < 0x20 || c == '\u2028' || c == '\u2029') escaped = null;
+                else continue;
+                builder.append(value, start, i);
+                if (escaped != null) builder.append(escaped);
+                else {
+                    builder.append("\\u")
+                        .append(HEX_DIGITS[(c >> 12) & 0xf])
+                        .append(HEX_DIGITS[(c >> 8) & 0xf])
+                        .append(HEX_DIGITS[(c >> 4) & 0xf])
+                        .append(HEX_DIGITS[c & 0xf]);
+                }
+                start = i + 1;
+            }
+            builder.append(value, start, length).append('"');
+        }
+    }
+
+    /**
+     * Reads a JSON object field by field. Nested objects and arrays are only skipped.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static final class ObjectReader {
+
+        private final String json;
+        private int position;
+        private boolean isValueExpected;
+        private boolean isFirstField;
+        private boolean isSeparatorRead;
+
+        /**
+         * Creates an ObjectReader.
+         * 
+         * @param json a JSON object.
+         * @throws JSONException if the given string isn't a JSON object.
+         */
+        public ObjectReader(String json) throws JSONException {
+            if (json == null) throw new JSONException("null is not a JSON object");
+            this.json = json;
+            this.isFirstField = true;
+            skipWhitespace();
+            expect('{');
+        }
+
+        /**
+         * @return if there is another field to read.
+         * @throws JSONException if the JSON is malformed.
+         */
+        public boolean hasNext() throws JSONException {
+            if (isValueExpected) throw syntaxError("Expected a value");
+            skipWhitespace();
+            if (!isFirstField && !isSeparatorRead) {
+                if (peek() == '}') return false;
+                expect(',');
+                skipWhitespace();
+                isSeparatorRead = true;
+            }
+            return peek() != '}';
+        }
+
+        /**
+         * @return the name of the next field.
+         * @throws JSONException if the JSON is malformed.
+         */
+        public String nextName() throws JSONException {
+            if (!hasNext()) throw syntaxError("No more fields");
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            isFirstField = false;
+            isSeparatorRead = false;
+            isValueExpected = true;
+            return name;
+        }
+
+        /**
+         * @return the value of the current field as string; {@code null} if it is null.
+         * @throws JSONException if the JSON is malformed or the value isn't a string nor a
+         *         literal.
+         */
+        public String nextString() throws JSONException {
+            beginValue();
+            char c = peek();
+            if (c == '"') return readString();
+            String literal = readLiteral();
+            return NULL.equals(literal) ? null : literal;
+        }
+
+        /**
+         * @return the value of the current field as long.
+         * @throws JSONException if the JSON is malformed or the value isn't an integer.
+         */
+        public long nextLong() throws JSONException {
+            beginValue();
+            String literal = peek() == '"' ? readString() : readLiteral();
+            try {
+                return Long.parseLong(literal);
+            } catch (NumberFormatException ex) {
+                throw syntaxError("Expected an integer but was " + literal);
+            }
+        }
+
+        /**
+         * @return the value of the current field as boolean.
+         * @throws JSONException if the JSON is malformed or the value isn't a boolean.
+         */
+        public boolean nextBoolean() throws JSONException {
+            beginValue();
+            String literal = readLiteral();
+            if (TRUE.equals(literal)) return true;
+            if (FALSE.equals(literal)) return false;
+            throw syntaxError("Expected a boolean but was " + literal);
+        }
+
+        /**
+         * Skips the value of the current field, whatever it is.
+         * 
+         * @throws JSONException if the JSON is malformed.
+         */
+        public void skipValue() throws JSONException {
+            beginValue();
+            int depth = 0;
+            do {
+                char c = peek();
+                if (c == '"') readString();
+                else if (c == '{' || c == '[') {
+                    depth++;
+                    position++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                    position++;
+                } else if (c == ',' || c == ':' || Character.isWhitespace(c)) position++;
+                else readLiteral();
+            } while (depth > 0);
+        }
+
+        /**
+         * Moves to the start of the current field value.
+         * 
+         * @throws JSONException if no value was expected.
+         */
+        private void beginValue() throws JSONException {
+            if (!isValueExpected) throw syntaxError("Expected a name");
+            isValueExpected = false;
+            skipWhitespace();
+        }
+
+        /**
+         * Reads a quoted string, unescaping it.
+         * 
+         * @return the string.
+         * @throws JSONException if the string is malformed.
+         */
+        private String readString() throws JSONException {
+            expect('"');
+            int start = position;
+            StringBuilder builder = null;
+            while (true) {
+                char c = peek();
+                if (c == '"') {
+                    String value = builder == null ? json.substring(start, position) : builder.append(json, start, position).toString();
+                    position++;
+                    return value;
+                }
+                if (c != '\\') {
+                    position++;
+                    continue;
+                }
+                if (builder == null) builder = new StringBuilder();
+                builder.append(json, start, position);
+                position++;
+                char escaped = peek();
+                position++;
+                if (escaped == 'n') builder.append('\n');
+                else if (escaped == 'r') builder.append('\r');
+                else if (escaped == 't') builder.append('\t');
+                else if (escaped == 'b') builder.append('\b');
+                else if (escaped == 'f') builder.append('\f');
+                else if (escaped == 'u') {
+                    if (position + 4 > json.length()) throw syntaxError("Unterminated escape sequence");
+                    try {
+                        builder.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw syntaxError("Invalid escape sequence");
+                    }
+                    position += 4;
+                } else builder.append(escaped); // " \ and /
+                start = position;
+            }
+        }
+
+        /**
+         * Reads an unquoted value: a number, true, false or null.
+         * 
+         * @return the literal.
+         * @throws JSONException if there is no literal.
+         */
+        private String readLiteral() throws JSONException {
+            int start = position;
+            while (position < json.length()) {
+                char c = json.charAt(position);
+                if (c == ',' || c == '}' || c == ']' || c == ':' || c == '"' || Character.isWhitespace(c)) break;
+                position++;
+            }
+            if (start == position) throw syntaxError("Expected a value");
+            return json.substring(start, position);
+        }
+
+        /** Skips whitespace. */
+        private void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) position++;
+        }
+
+        /**
+         * @return the current character.
+         * @throws JSONException if the end of the JSON was reached.
+         */
+        private char peek() throws JSONException {
+            if (position >= json.length()) throw syntaxError("Unexpected end of input");
+            return json.charAt(position);
+        }
+
+        /**
+         * Consumes the given character.
+         * 
+         * @param expected the expected character.
+         * @throws JSONException if the current character is a different one.
+         */
+        private void expect(char expected) throws JSONException {
+            if (peek() != expected) throw syntaxError("Expected " + expected);
+            position++;
+        }
+
+        /**
+         * @param message what went wrong.
+         * @return a JSONException with the given message and the current position.
+         */
+        private JSONException syntaxError(String message) {
+            return new JSONException(message + " at character " + position);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.widget;
+
+import android.content.Context;
+import android.widget.AbsListView;
+
+import com.twitt4droid.util.ImageRequest;
+import com.twitt4droid.util.Images;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Scroll listener that warms the image caches for the rows that are about to be shown. It
+ * watches the scroll direction and prefetches the images of the next rows in that direction;
+ * pending prefetches are cancelled when the direction changes. While the list is flinging the
+ * image scheduler serves the newest requests first. Use it like this:
+ * <pre>
+ * {@code
+ * listView.setOnScrollListener(new ImagePrefetcher(context, adapter, 10));
+ * }
+ * </pre>
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class ImagePrefetcher implements AbsListView.OnScrollListener {
+
+    private static final int NO_POSITION = -1;
+
+    private final Context context;
+    private final ImageUrlProvider urlProvider;
+    private final int prefetchCount;
+    private final List<ImageRequest> pendingPrefetches;
+
+    private int lastFirstVisibleItem;
+    private int lastPrefetchedPosition;
+    private boolean isScrollingDown;
+
+    /**
+     * Creates an ImagePrefetcher.
+     * 
+     * @param context the application context.
+     * @param urlProvider provides the image url of each row.
+     * @param prefetchCount how many rows ahead are prefetched.
+     */
+    public ImagePrefetcher(Context context, ImageUrlProvider urlProvider, int prefetchCount) {
+        this.context = context.getApplicationContext();
+        this.urlProvider = urlProvider;
+        this.prefetchCount = prefetchCount;
+        this.pendingPrefetches = new ArrayList<>();
+        this.lastPrefetchedPosition = NO_POSITION;
+        this.isScrollingDown = true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        Images.setFlinging(scrollState == SCROLL_STATE_FLING);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        if (visibleItemCount == 0 || totalItemCount == 0) return;
+        if (firstVisibleItem != lastFirstVisibleItem) {
+            boolean isNowScrollingDown = firstVisibleItem > lastFirstVisibleItem;
+            if (isNowScrollingDown != isScrollingDown) {
+                cancel();
+                isScrollingDown = isNowScrollingDown;
+            }
+            lastFirstVisibleItem = firstVisibleItem;
+        }
+
+        if (isScrollingDown) {
+            int from = Math.max(firstVisibleItem + visibleItemCount, lastPrefetchedPosition + 1);
+            int to = Math.min(firstVisibleItem + visibleItemCount + prefetchCount, totalItemCount);
+            for (int position = from; position < to; position++) prefetch(position);
+        } else {
+            int from = lastPrefetchedPosition == NO_POSITION ? firstVisibleItem - 1 : Math.min(firstVisibleItem - 1, lastPrefetchedPosition - 1);
+            int to = Math.max(firstVisibleItem - prefetchCount, 0);
+            for (int position = from; position >= to; position--) prefetch(position);
+        }
+    }
+
+    /** Cancels all the pending prefetches. */
+    public void cancel() {
+        for (ImageRequest prefetch : pendingPrefetches) prefetch.cancel();
+        pendingPrefetches.clear();
+        lastPrefetchedPosition = NO_POSITION;
+    }
+
+    /**
+     * Prefetches the image of the given position.
+     * 
+     * @param position a row position.
+     */
+    private void prefetch(int position) {
+        lastPrefetchedPosition = position;
+        ImageRequest prefetch = Images.prefetch(context, urlProvider.getImageUrl(position));
+        if (prefetch != null) {
+            removeDonePrefetches();
+            pendingPrefetches.add(prefetch);
+        }
+    }
+
+    /** Forgets the prefetches that are already done. */
+    private void removeDonePrefetches() {
+        Iterator<ImageRequest> iterator = pendingPrefetches.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isDone()) iterator.remove();
+        }
+    }
+
+    /**
+     * Provides the image url of each row.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static interface ImageUrlProvider {
+
+        /**
+         * @param position a row position.
+         * @return the image url of the given row or {@code null}.
+         */
+        String getImageUrl(int position);
+    }
+}
\ No newline at end of file
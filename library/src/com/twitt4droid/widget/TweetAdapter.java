@@ -20,32 +20,38 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LongSparseArray;
 import android.text.format.DateFormat;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.ImageButton;
 import android.widget.ImageView;
+import android.widget.ListView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
-import android.widget.Toast;
 
 import com.twitt4droid.R;
-import com.twitt4droid.Resources;
+import com.twitt4droid.StatusActionDispatcher;
 import com.twitt4droid.Twitt4droid;
 import com.twitt4droid.activity.UserProfileActivity;
+import com.twitt4droid.util.ImageVariants;
+import com.twitt4droid.util.Images;
 import com.twitt4droid.util.Images.ImageLoader;
+import com.twitt4droid.util.Objects;
 
-import twitter4j.AsyncTwitter;
 import twitter4j.Status;
-import twitter4j.TwitterAdapter;
-import twitter4j.TwitterException;
-import twitter4j.TwitterMethod;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Adapter that is responsible for making a View for each Twitter status.
@@ -53,15 +59,29 @@ import java.util.List;
  * @author Daniel Pedraza-Arcega
  * @since version 1.0
  */
-public class TweetAdapter extends BaseAdapter {
+public class TweetAdapter extends BaseAdapter implements ImagePrefetcher.ImageUrlProvider {
 
-    private static final String TAG = TweetAdapter.class.getSimpleName();
+    private static final long NO_ANCHOR = -1;
+    private static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "twitt4droid-tweet-diff");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
     private final Context context;
+    private final int profileImageSize;
+    private final java.text.DateFormat dateFormat;
+    private final java.text.DateFormat timeFormat;
+    private final Handler mainHandler;
 
-    private AsyncTwitter twitter;
-    private List<Status> data;
+    private List<Row> rows;
+    private List<Status> pendingData;
+    private int setGeneration;
     private boolean isUsingDarkTheme;
+    private int darkThemeTextColor;
 
     /**
      * Standard constructor.
@@ -71,87 +91,163 @@ public class TweetAdapter extends BaseAdapter {
     public TweetAdapter(Context context) {
         if (!Twitt4droid.isUserLoggedIn(context)) throw new IllegalStateException("User must be logged in in order to use TweetAdapter");
         this.context = context;
-        this.data = new ArrayList<>();
-        this.twitter = Twitt4droid.getAsyncTwitter(context);
-        setUpTwitter();
+        this.rows = new ArrayList<>();
+        this.pendingData = new ArrayList<>();
+        this.dateFormat = DateFormat.getDateFormat(context.getApplicationContext());
+        this.timeFormat = DateFormat.getTimeFormat(context.getApplicationContext());
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.profileImageSize = context.getResources().getDimensionPixelSize(R.dimen.twitt4droid_tweet_profile_image_size);
+        Images.init(context);
     }
 
-    /** Sets up twitter callbacks. */
-    private void setUpTwitter() {
-        twitter.addListener(new TwitterAdapter() {
-
-            @Override
-            public void createdFavorite(Status status) {
-                ((Activity)context).runOnUiThread(new Runnable() {
-                    
-                    @Override
-                    public void run() {
-                        Toast.makeText(context.getApplicationContext(), 
-                                R.string.twitt4droid_tweet_favorited, 
-                                Toast.LENGTH_SHORT)
-                                .show();
-                    }
-                });
-            }
-            
-            @Override
-            public void retweetedStatus(Status retweetedStatus) {
-                ((Activity) context).runOnUiThread(new Runnable() {
+    /**
+     * Sets the data to be displayed. See {@link #set(List, ListView)}.
+     * 
+     * @param data the data to be displayed.
+     */
+    public void set(List<Status> data) {
+        set(data, null);
+    }
 
-                    @Override
-                    public void run() {
-                        Toast.makeText(context.getApplicationContext(), 
-                                R.string.twitt4droid_tweet_retweeted, 
-                                Toast.LENGTH_SHORT)
-                                .show();
-                    }
-                });
-            }
+    /**
+     * Sets the data to be displayed. The new data is diffed against the current one in a
+     * background thread: statuses that were already displayed, and haven't changed, keep their
+     * row so their views aren't bound again, and the texts of the new ones are formatted there,
+     * once, so binding a row while scrolling doesn't allocate. If a ListView is given, the first
+     * visible status is kept at the same offset, so new statuses can be prepended without
+     * moving what the user is reading.
+     * 
+     * @param data the data to be displayed.
+     * @param listView the ListView that shows this adapter or {@code null}.
+     */
+    public void set(List<Status> data, final ListView listView) {
+        final int generation = ++setGeneration;
+        final List<Row> oldRows = rows;
+        final List<Status> newData = data == null ? new ArrayList<Status>() : new ArrayList<>(data);
+        pendingData = newData;
+        DIFF_EXECUTOR.execute(new Runnable() {
 
             @Override
-            public void onException(TwitterException te, TwitterMethod method) {
-                Log.e(TAG, "Twitter error in" + method, te);
-                ((Activity) context).runOnUiThread(new Runnable() {
+            public void run() {
+                final List<Row> newRows = diff(oldRows, newData);
+                mainHandler.post(new Runnable() {
 
                     @Override
                     public void run() {
-                        Toast.makeText(context.getApplicationContext(), 
-                                R.string.twitt4droid_error_message, 
-                                Toast.LENGTH_SHORT)
-                                .show();
+                        if (generation == setGeneration) apply(newRows, listView);
                     }
                 });
             }
         });
     }
 
-    /** @param data the data to be displayed. */
-    public void set(List<Status> data) {
-        this.data = data == null ? new ArrayList<Status>() : data;
+    /**
+     * Adds the given statuses before the current ones, replacing the current statuses with the
+     * same id. The current statuses are the ones of the last {@link #set(List, ListView)}, even
+     * if they aren't displayed yet, so a pending set isn't lost.
+     * 
+     * @param newer the statuses to prepend.
+     * @param listView the ListView that shows this adapter or {@code null}.
+     */
+    public void prepend(List<Status> newer, ListView listView) {
+        Set<Long> newerIds = new HashSet<>(newer.size() * 2);
+        for (Status status : newer) newerIds.add(status.getId());
+        List<Status> merged = new ArrayList<>(newer.size() + pendingData.size());
+        merged.addAll(newer);
+        for (Status status : pendingData) {
+            if (!newerIds.contains(status.getId())) merged.add(status);
+        }
+        set(merged, listView);
+    }
+
+    /**
+     * Builds the rows of the given data reusing the old rows of the statuses that haven't
+     * changed. Runs in the diff thread.
+     * 
+     * @param oldRows the current rows.
+     * @param newData the new data.
+     * @return the new rows.
+     */
+    private List<Row> diff(List<Row> oldRows, List<Status> newData) {
+        LongSparseArray<Row> oldRowsById = new LongSparseArray<>(oldRows.size());
+        for (Row row : oldRows) oldRowsById.put(row.status.getId(), row);
+        List<Row> newRows = new ArrayList<>(newData.size());
+        for (Status status : newData) {
+            Row oldRow = oldRowsById.get(status.getId());
+            newRows.add(oldRow != null && oldRow.isShowing(status) ? oldRow : new Row(status));
+        }
+        return newRows;
+    }
+
+    /**
+     * Replaces the current rows keeping the first visible status of the given ListView at the
+     * same offset.
+     * 
+     * @param newRows the new rows.
+     * @param listView the ListView that shows this adapter or {@code null}.
+     */
+    private void apply(List<Row> newRows, ListView listView) {
+        long anchorId = NO_ANCHOR;
+        int anchorPosition = ListView.INVALID_POSITION;
+        int anchorTop = 0;
+        if (listView != null && listView.getChildCount() > 0) {
+            anchorPosition = listView.getFirstVisiblePosition() - listView.getHeaderViewsCount();
+            if (anchorPosition >= 0 && anchorPosition < rows.size()) {
+                anchorId = rows.get(anchorPosition).status.getId();
+                anchorTop = listView.getChildAt(0).getTop();
+            }
+        }
+        rows = newRows;
         notifyDataSetChanged();
+        if (anchorId != NO_ANCHOR) {
+            for (int position = 0; position < newRows.size(); position++) {
+                if (newRows.get(position).status.getId() == anchorId) {
+                    if (position != anchorPosition) listView.setSelectionFromTop(position + listView.getHeaderViewsCount(), anchorTop);
+                    break;
+                }
+            }
+        }
     }
 
     /** {@inheritDoc} */
     @Override
     public int getCount() {
-        return data.size();
+        return rows.size();
     }
 
     /** {@inheritDoc} */
     @Override
     public Status getItem(int position) {
-        return data.get(position);
+        return rows.get(position).status;
     }
 
     /** {@inheritDoc} */
     @Override
     public long getItemId(int position) {
-        return position;
+        return rows.get(position).status.getId();
     }
 
-    /** @param useDarkTheme if this adapter uses or not the dark theme. */
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getImageUrl(int position) {
+        return position >= 0 && position < rows.size() ? rows.get(position).profileImageUrl : null;
+    }
+
+    /**
+     * Sets the theme of the rows. The theme resources are resolved here, once, and applied when
+     * each row view is created, so call this method before setting this adapter to a ListView.
+     * 
+     * @param useDarkTheme if this adapter uses or not the dark theme.
+     */
     public void setUseDarkTheme(boolean useDarkTheme) {
         isUsingDarkTheme = useDarkTheme;
+        if (useDarkTheme) darkThemeTextColor = context.getResources().getColor(R.color.twitt4droid_text_color_inverse);
     }
 
     /** {@inheritDoc} */
@@ -162,9 +258,6 @@ public class TweetAdapter extends BaseAdapter {
             LayoutInflater layoutInflater = (LayoutInflater) context.getSystemService(Activity.LAYOUT_INFLATER_SERVICE);
             convertView = layoutInflater.inflate(R.layout.twitt4droid_tweet_item, parent, false);
             holder = new ViewHolder();
-            holder.context = context;
-            holder.twitter = twitter;
-            holder.isUsingDarkTheme = isUsingDarkTheme;
             holder.contentLayout = (RelativeLayout) convertView.findViewById(R.id.content_layout);
             holder.profileImage = (ImageView) convertView.findViewById(R.id.tweet_profile_image);
             holder.clockImage = (ImageView) convertView.findViewById(R.id.clock_image);
@@ -172,23 +265,65 @@ public class TweetAdapter extends BaseAdapter {
             holder.usernameTextView = (TextView) convertView.findViewById(R.id.tweet_username_text);
             holder.tweetTimeTextView = (TextView) convertView.findViewById(R.id.tweet_time_text);
             holder.overflowButton = (ImageButton) convertView.findViewById(R.id.tweet_options_button);
+            holder.profileImage.setOnClickListener(holder);
+            holder.overflowButton.setOnClickListener(holder);
+            holder.imageLoader = new ImageLoader(context)
+                .setImageView(holder.profileImage)
+                .setLoadingColorId(R.color.twitt4droid_no_image_background)
+                .setTargetSize(ImageLoader.URL_AS_IS); // rows hold the variant url already
+            holder.setUpDarkThemeIfNeeded();
             convertView.setTag(holder);
         } else holder = (ViewHolder) convertView.getTag();
-        holder.setContent(getItem(position));
+        holder.setContent(position);
         return convertView;
     }
 
+    /**
+     * The display texts of a Twitter status, computed when the data is set.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private final class Row {
+
+        private final Status status;
+        private final String usernameText;
+        private final String dateText;
+        private final String profileImageUrl;
+
+        /** @param status a Twitter status. */
+        private Row(Status status) {
+            this.status = status;
+            this.usernameText = context.getString(R.string.twitt4droid_tweet_username_format, status.getUser().getScreenName(), status.getUser().getName());
+            this.dateText = context.getString(R.string.twitt4droid_tweet_date_format, 
+                    dateFormat.format(status.getCreatedAt()),
+                    timeFormat.format(status.getCreatedAt()));
+            this.profileImageUrl = ImageVariants.select(status.getUser().getProfileImageURL(), profileImageSize);
+        }
+
+        /**
+         * @param other a Twitter status.
+         * @return if this row shows the given status as it is.
+         */
+        private boolean isShowing(Status other) {
+            return Objects.equals(status.getText(), other.getText())
+                    && Objects.equals(status.getCreatedAt(), other.getCreatedAt())
+                    && Objects.equals(status.getUser().getScreenName(), other.getUser().getScreenName())
+                    && Objects.equals(status.getUser().getName(), other.getUser().getName())
+                    && Objects.equals(status.getUser().getProfileImageURL(), other.getUser().getProfileImageURL());
+        }
+    }
+
     /**
      * Stores each of the component views inside the tag field of a Layout, so it can immediately
-     * access them without the need to look them up repeatedly.
+     * access them without the need to look them up repeatedly. It is also the click listener of
+     * its views, created once per row view; the clicked status is read from the bound position.
      * 
      * @author Daniel Pedraza-Arcega
      * @since version 1.0
      */
-    private static class ViewHolder {
+    private class ViewHolder implements View.OnClickListener {
 
-        private Context context;
-        private AsyncTwitter twitter;
         private RelativeLayout contentLayout;
         private ImageView profileImage;
         private ImageView clockImage;
@@ -196,80 +331,68 @@ public class TweetAdapter extends BaseAdapter {
         private TextView tweetTextView;
         private TextView tweetTimeTextView;
         private ImageButton overflowButton;
-        private boolean isUsingDarkTheme;
+        private ImageLoader imageLoader;
+        private Row boundRow;
+        private int position;
 
         /**
-         * Sets up the content of a Twitter status.
+         * Sets up the content of a Twitter status. Does nothing but updating the position if
+         * the row is already bound.
          * 
-         * @param status a Twitter status.
+         * @param position the position of the Twitter status.
          */
-        private void setContent(final Status status) {
-            setUpDarkThemeIfNeeded();
-            usernameTextView.setText(context.getString(R.string.twitt4droid_tweet_username_format, status.getUser().getScreenName(), status.getUser().getName()));
-            tweetTextView.setText(status.getText());
-            String dateText = context.getString(R.string.twitt4droid_tweet_date_format, 
-                    DateFormat.getDateFormat(context.getApplicationContext()).format(status.getCreatedAt()),
-                    DateFormat.getTimeFormat(context.getApplicationContext()).format(status.getCreatedAt()));
-            tweetTimeTextView.setText(dateText);
-            new ImageLoader(context)
-                .setImageView(profileImage)
-                .setLoadingColorId(R.color.twitt4droid_no_image_background)
-                .execute(status.getUser().getProfileImageURL());
-            profileImage.setOnClickListener(new View.OnClickListener() {
-                
-                @Override
-                public void onClick(View view) {
-                    Intent profileIntent = UserProfileActivity.buildIntent(context, status.getUser().getScreenName(), isUsingDarkTheme);
-                    context.startActivity(profileIntent);
-                }
-            });
-            overflowButton.setOnClickListener(new View.OnClickListener() {
-
-                @Override
-                public void onClick(View view) {
-                    new AlertDialog.Builder(context)
-                        .setItems(R.array.twitt4droid_tweet_context_menu, new DialogInterface.OnClickListener() {
-                            @Override
-                            public void onClick(DialogInterface dialog, int which) {
-                                switch (which) {
-                                    case 0:
-                                        String text = context.getString(R.string.twitt4droid_username_format, status.getUser().getScreenName());
-                                        new TweetDialog(context).addTextToTweet(text).show();
-                                        break;
-                                    case 1:
-                                        if (Resources.isConnectedToInternet(context)) twitter.retweetStatus(status.getId());
-                                        else {
-                                            Toast.makeText(context.getApplicationContext(),
-                                                    R.string.twitt4droid_is_offline_messege,
-                                                    Toast.LENGTH_LONG).show();
-                                        }
-                                        break;
-                                    case 2:
-                                        if (Resources.isConnectedToInternet(context)) twitter.createFavorite(status.getId());
-                                        else {
-                                            Toast.makeText(context.getApplicationContext(),
-                                                    R.string.twitt4droid_is_offline_messege,
-                                                    Toast.LENGTH_LONG).show();
-                                        }
-                                        break;
-                                }
+        private void setContent(int position) {
+            this.position = position;
+            Row row = rows.get(position);
+            if (row == boundRow) return;
+            boundRow = row;
+            usernameTextView.setText(row.usernameText);
+            tweetTextView.setText(row.status.getText());
+            tweetTimeTextView.setText(row.dateText);
+            imageLoader.execute(row.profileImageUrl);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onClick(View view) {
+            if (position >= rows.size()) return;
+            final Status status = rows.get(position).status;
+            if (view == profileImage) {
+                Intent profileIntent = UserProfileActivity.buildIntent(context, status.getUser().getScreenName(), isUsingDarkTheme);
+                context.startActivity(profileIntent);
+            } else if (view == overflowButton) {
+                new AlertDialog.Builder(context)
+                    .setItems(R.array.twitt4droid_tweet_context_menu, new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            switch (which) {
+                                case 0:
+                                    String text = context.getString(R.string.twitt4droid_username_format, status.getUser().getScreenName());
+                                    new TweetDialog(context).addTextToTweet(text).show();
+                                    break;
+                                case 1:
+                                    StatusActionDispatcher.retweet(context, status.getId());
+                                    break;
+                                case 2:
+                                    StatusActionDispatcher.favorite(context, status.getId());
+                                    break;
                             }
-                        })
-                        .setInverseBackgroundForced(true)
-                        .show();
-                }
-            });
+                        }
+                    })
+                    .setInverseBackgroundForced(true)
+                    .show();
+            }
         }
 
-        /** Sets up the dark theme if needed. */
+        /** Sets up the dark theme if needed. Called once, when the row view is created. */
         private void setUpDarkThemeIfNeeded() {
             if (isUsingDarkTheme) {
                 contentLayout.setBackgroundResource(R.drawable.twitt4droid_holo_dark_background_with_shadow);
                 overflowButton.setImageResource(R.drawable.twitt4droid_ic_overflow_holo_dark);
                 clockImage.setImageResource(R.drawable.twitt4droid_ic_clock_holo_dark);
-                usernameTextView.setTextColor(context.getResources().getColor(R.color.twitt4droid_text_color_inverse));
-                tweetTextView.setTextColor(context.getResources().getColor(R.color.twitt4droid_text_color_inverse));
-                tweetTimeTextView.setTextColor(context.getResources().getColor(R.color.twitt4droid_text_color_inverse));
+                usernameTextView.setTextColor(darkThemeTextColor);
+                tweetTextView.setTextColor(darkThemeTextColor);
+                tweetTimeTextView.setTextColor(darkThemeTextColor);
             }
         }
     }
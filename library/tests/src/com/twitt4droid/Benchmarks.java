@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Times small pieces of code for the benchmarks of this project and logs the before/after
+ * results under the {@code Benchmarks} tag. Each task runs a warm up round, so the JIT and the
+ * caches are warm, before the measured round. Run them like this:
+ * <pre>
+ * {@code
+ * adb shell am instrument -w -e class com.twitt4droid.util.ImagesBenchmark com.twitt4droid.tests/android.test.InstrumentationTestRunner
+ * adb logcat -s Benchmarks
+ * }
+ * </pre>
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public final class Benchmarks {
+
+    private static final String TAG = Benchmarks.class.getSimpleName();
+
+    /**
+     * Default constructor. Do NOT try to initialize this class, it is suppose
+     * to be an static utility.
+     */
+    private Benchmarks() {
+        throw new IllegalAccessError("This class cannot be instantiated nor extended");
+    }
+
+    /**
+     * Runs the given task the given times after a warm up round of the same size.
+     * 
+     * @param iterations how many times the task runs.
+     * @param task the task to time.
+     * @return the average time of a run in nanoseconds.
+     * @throws Exception if the task failed.
+     */
+    public static long nanosPerRun(int iterations, Task task) throws Exception {
+        for (int i = 0; i < iterations; i++) task.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) task.run();
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    /**
+     * Logs the before/after result of a benchmark.
+     * 
+     * @param name the benchmark name.
+     * @param beforeNanos the time of the old code in nanoseconds.
+     * @param afterNanos the time of the new code in nanoseconds.
+     */
+    public static void report(String name, long beforeNanos, long afterNanos) {
+        Log.i(TAG, String.format(Locale.US, "%s: before=%dns after=%dns speedup=%.1fx",
+                name, beforeNanos, afterNanos, beforeNanos / (double) Math.max(1L, afterNanos)));
+    }
+
+    /**
+     * A piece of code to time.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static interface Task {
+
+        /**
+         * Runs the code once.
+         * 
+         * @throws Exception if the code failed.
+         */
+        void run() throws Exception;
+    }
+}
\ No newline at end of file
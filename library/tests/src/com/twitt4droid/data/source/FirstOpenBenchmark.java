@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.data.source;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.test.AndroidTestCase;
+
+import com.twitt4droid.Benchmarks;
+import com.twitt4droid.R;
+
+import java.io.IOException;
+
+/**
+ * Compares the first open of the twitt4droid database, which copies the prebuilt template into
+ * place, against creating it from {@code db_schema.sql} as it was done before.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class FirstOpenBenchmark extends AndroidTestCase {
+
+    private static final String SCHEMA_DATABASE_NAME = "first_open_benchmark";
+    private static final int ITERATIONS = 5;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void tearDown() throws Exception {
+        Twitt4droidDatabaseHelper.closeAndDeleteDb(getContext());
+        getContext().deleteDatabase(SCHEMA_DATABASE_NAME);
+        super.tearDown();
+    }
+
+    /** Times opening a database that doesn't exist yet. */
+    public void testFirstOpen() throws Exception {
+        final Context context = getContext();
+        long before = Benchmarks.nanosPerRun(ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() {
+                context.deleteDatabase(SCHEMA_DATABASE_NAME);
+                SchemaDatabaseHelper helper = new SchemaDatabaseHelper(context);
+                helper.getWritableDatabase();
+                helper.close();
+            }
+        });
+        long after = Benchmarks.nanosPerRun(ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() {
+                Twitt4droidDatabaseHelper.closeAndDeleteDb(context);
+                Twitt4droidDatabaseHelper.getInstance(context).getWritableDatabase();
+            }
+        });
+        Benchmarks.report("Database first open", before, after);
+        assertEquals(0, DatabaseUtils.queryNumEntries(Twitt4droidDatabaseHelper.getInstance(context).getWritableDatabase(), "home"));
+    }
+
+    /**
+     * Creates the database from the schema, as Twitt4droidDatabaseHelper did before the template.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private static class SchemaDatabaseHelper extends SQLiteOpenHelper {
+
+        private final Context context;
+
+        /** @param context the application context. */
+        private SchemaDatabaseHelper(Context context) {
+            super(context, SCHEMA_DATABASE_NAME, null, 1);
+            this.context = context;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onCreate(SQLiteDatabase database) {
+            SQLFileParser parser = new SQLFileParser(context.getResources().openRawResource(R.raw.db_schema));
+            try {
+                String statement;
+                while ((statement = parser.nextStatement()) != null) database.execSQL(statement);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            } finally {
+                parser.close();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) { }
+    }
+}
\ No newline at end of file
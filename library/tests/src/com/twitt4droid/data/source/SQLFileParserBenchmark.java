@@ -0,0 +1,214 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.data.source;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.twitt4droid.Benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link SQLFileParser} against the old parser, which read the file one char at a time,
+ * removed the comments with a regex over the whole file and split it by semicolons, on a large
+ * migration script. The old code also executed each statement in its own transaction.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class SQLFileParserBenchmark extends AndroidTestCase {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Pattern OLD_COMMENT_PATTERN = Pattern.compile("(?:/\\*[^;]*?\\*/)|(?:--[^;]*?$)", Pattern.DOTALL | Pattern.MULTILINE);
+    private static final String DATABASE_NAME = "sql_file_parser_benchmark";
+    private static final int TABLE_COUNT = 10;
+    private static final int ROWS_PER_TABLE = 200;
+    private static final int PARSE_ITERATIONS = 20;
+    private static final int EXECUTE_ITERATIONS = 2;
+
+    private byte[] script;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        script = buildScript().getBytes(UTF_8);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void tearDown() throws Exception {
+        getContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    /** Comments are dropped and semicolons in literals don't end a statement. */
+    public void testParsesCommentsAndLiterals() throws Exception {
+        String sql = "-- a comment; with a semicolon\n"
+                + "CREATE TABLE t (a TEXT); /* another; comment */\n"
+                + "INSERT INTO t VALUES ('a;b''c');\n"
+                + "INSERT INTO t VALUES (\"x;y\")";
+        List<String> statements = parse(new ByteArrayInputStream(sql.getBytes(UTF_8)));
+        assertEquals(3, statements.size());
+        assertEquals("CREATE TABLE t (a TEXT)", statements.get(0));
+        assertEquals("INSERT INTO t VALUES ('a;b''c')", statements.get(1));
+        assertEquals("INSERT INTO t VALUES (\"x;y\")", statements.get(2));
+    }
+
+    /** Times parsing the script. */
+    public void testParse() throws Exception {
+        int oldCount = 0;
+        for (String statement : parseOld(new ByteArrayInputStream(script))) {
+            if (statement.trim().length() > 0) oldCount++;
+        }
+        assertEquals(oldCount, parse(new ByteArrayInputStream(script)).size());
+        long before = Benchmarks.nanosPerRun(PARSE_ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() throws Exception {
+                parseOld(new ByteArrayInputStream(script));
+            }
+        });
+        long after = Benchmarks.nanosPerRun(PARSE_ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() throws Exception {
+                parse(new ByteArrayInputStream(script));
+            }
+        });
+        Benchmarks.report("Migration script parse", before, after);
+    }
+
+    /** Times parsing and executing the script in a database file. */
+    public void testParseAndExecute() throws Exception {
+        final Context context = getContext();
+        long before = Benchmarks.nanosPerRun(EXECUTE_ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() throws Exception {
+                context.deleteDatabase(DATABASE_NAME);
+                SQLiteDatabase database = context.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+                try {
+                    for (String statement : parseOld(new ByteArrayInputStream(script))) {
+                        if (statement.trim().length() > 0) database.execSQL(statement);
+                    }
+                } finally {
+                    database.close();
+                }
+            }
+        });
+        long after = Benchmarks.nanosPerRun(EXECUTE_ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() throws Exception {
+                context.deleteDatabase(DATABASE_NAME);
+                SQLiteDatabase database = context.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+                SQLFileParser parser = new SQLFileParser(new ByteArrayInputStream(script));
+                try {
+                    database.beginTransaction();
+                    String statement;
+                    while ((statement = parser.nextStatement()) != null) database.execSQL(statement);
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                    parser.close();
+                    database.close();
+                }
+            }
+        });
+        Benchmarks.report("Migration script parse and execute", before, after);
+        SQLiteDatabase database = context.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+        try {
+            assertEquals(ROWS_PER_TABLE, DatabaseUtils.queryNumEntries(database, "migrated_0"));
+        } finally {
+            database.close();
+        }
+    }
+
+    /**
+     * Parses the given stream with SQLFileParser.
+     * 
+     * @param stream a SQL stream.
+     * @return the statements.
+     * @throws Exception if the stream couldn't be read.
+     */
+    private static List<String> parse(InputStream stream) throws Exception {
+        List<String> statements = new ArrayList<>();
+        SQLFileParser parser = new SQLFileParser(stream);
+        try {
+            String statement;
+            while ((statement = parser.nextStatement()) != null) statements.add(statement);
+        } finally {
+            parser.close();
+        }
+        return statements;
+    }
+
+    /**
+     * Parses the given stream like SQLFileParser did before.
+     * 
+     * @param stream a SQL stream.
+     * @return the statements, the blank ones included.
+     * @throws Exception if the stream couldn't be read.
+     */
+    private static String[] parseOld(InputStream stream) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+        try {
+            int r;
+            StringBuilder sb = new StringBuilder();
+            while ((r = reader.read()) != -1) sb.append((char) r);
+            return OLD_COMMENT_PATTERN.matcher(sb).replaceAll("").split(";");
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Builds a migration script that creates some tables and fills them. There are no
+     * semicolons inside its literals, since the old parser would break them.
+     * 
+     * @return the script.
+     */
+    private static String buildScript() {
+        StringBuilder builder = new StringBuilder();
+        for (int table = 0; table < TABLE_COUNT; table++) {
+            builder.append("/* Table ").append(table).append(" */\n")
+                .append("CREATE TABLE migrated_").append(table).append(" (\n")
+                .append("    id INTEGER NOT NULL, -- the status id\n")
+                .append("    tweet_content VARCHAR(140) NOT NULL,\n")
+                .append("    created_at INTEGER NOT NULL,\n")
+                .append("    PRIMARY KEY (id)\n")
+                .append(");\n");
+            for (int row = 0; row < ROWS_PER_TABLE; row++) {
+                builder.append("INSERT INTO migrated_").append(table)
+                    .append(" (id, tweet_content, created_at) VALUES (").append(row)
+                    .append(", 'Status ").append(row).append(" of the ''migrated'' timeline', ")
+                    .append(1400000000000L + row).append(");\n");
+            }
+        }
+        return builder.toString();
+    }
+}
\ No newline at end of file
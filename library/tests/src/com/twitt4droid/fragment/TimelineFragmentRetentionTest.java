@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.fragment;
+
+import android.os.Bundle;
+import android.support.v4.app.FragmentActivity;
+import android.support.v4.app.FragmentManager;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.widget.ListView;
+
+import com.twitt4droid.R;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that recreating a timeline many times doesn't retain its old fragments and adapters,
+ * as it used to when every TweetAdapter registered an AsyncTwitter listener that was never
+ * removed. The retained heap is logged too.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class TimelineFragmentRetentionTest extends ActivityInstrumentationTestCase2<FragmentActivity> {
+
+    private static final String TAG = TimelineFragmentRetentionTest.class.getSimpleName();
+    private static final int RECREATION_COUNT = 100;
+    private static final int MAX_RETAINED = 2;
+    private static final int GC_ROUNDS = 5;
+
+    private final List<WeakReference<Object>> fragments;
+    private final List<WeakReference<Object>> adapters;
+
+    /** Creates a TimelineFragmentRetentionTest. */
+    public TimelineFragmentRetentionTest() {
+        super(FragmentActivity.class);
+        fragments = new ArrayList<>();
+        adapters = new ArrayList<>();
+    }
+
+    /** Recreates a timeline 100 times and checks that only a few of them are still reachable. */
+    public void testRetentionIsBounded() throws Throwable {
+        final FragmentManager fragmentManager = getActivity().getSupportFragmentManager();
+        long heapBefore = usedHeap();
+        for (int i = 0; i < RECREATION_COUNT; i++) {
+            runTestOnUiThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    EmptyTimelineFragment fragment = new EmptyTimelineFragment();
+                    fragment.setArguments(new Bundle());
+                    fragmentManager.beginTransaction().replace(android.R.id.content, fragment).commit();
+                    fragmentManager.executePendingTransactions();
+                    ListView tweetsList = (ListView) fragment.getView().findViewById(R.id.tweets_list);
+                    fragments.add(new WeakReference<Object>(fragment));
+                    adapters.add(new WeakReference<Object>(tweetsList.getAdapter()));
+                }
+            });
+            getInstrumentation().waitForIdleSync();
+        }
+        runTestOnUiThread(new Runnable() {
+
+            @Override
+            public void run() {
+                fragmentManager.beginTransaction().remove(fragmentManager.findFragmentById(android.R.id.content)).commit();
+                fragmentManager.executePendingTransactions();
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        long heapAfter = usedHeap();
+        int retainedFragments = countReachable(fragments);
+        int retainedAdapters = countReachable(adapters);
+        Log.i(TAG, "After " + RECREATION_COUNT + " recreations: retained fragments=" + retainedFragments
+                + " adapters=" + retainedAdapters + " heap growth=" + (heapAfter - heapBefore) / 1024L + "KB");
+        assertTrue("Retained fragments: " + retainedFragments, retainedFragments <= MAX_RETAINED);
+        assertTrue("Retained adapters: " + retainedAdapters, retainedAdapters <= MAX_RETAINED);
+    }
+
+    /**
+     * @param references weak references.
+     * @return how many references weren't cleared.
+     */
+    private static int countReachable(List<WeakReference<Object>> references) {
+        int count = 0;
+        for (WeakReference<Object> reference : references) {
+            if (reference.get() != null) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Collects the garbage and measures the heap in use.
+     * 
+     * @return the heap in use in bytes.
+     * @throws InterruptedException if interrupted while waiting for the collector.
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            runtime.gc();
+            System.runFinalization();
+            Thread.sleep(100L);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A timeline that never loads statuses, so only its views and adapter are created.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    public static class EmptyTimelineFragment extends TimelineFragment {
+
+        /** {@inheritDoc} */
+        @Override
+        public int getResourceTitle() {
+            return R.string.twitt4droid_home_timeline_fragment_title;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int getResourceHoloLightIcon() {
+            return R.drawable.twitt4droid_ic_home_holo_light;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int getResourceHoloDarkIcon() {
+            return R.drawable.twitt4droid_ic_home_holo_dark;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected StatusesLoaderTask initStatusesLoaderTask() {
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.live;
+
+import twitter4j.RateLimitStatus;
+import twitter4j.ResponseList;
+import twitter4j.Status;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+
+/**
+ * Builds statuses and responses for the tests of the live package without a Twitter connection.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+final class FakeStatuses {
+
+    /**
+     * Default constructor. Do NOT try to initialize this class, it is suppose
+     * to be an static utility.
+     */
+    private FakeStatuses() {
+        throw new IllegalAccessError("This class cannot be instantiated nor extended");
+    }
+
+    /**
+     * Creates a status that only knows its id.
+     * 
+     * @param id the status id.
+     * @return a new status.
+     */
+    static Status newStatus(final long id) {
+        return (Status) Proxy.newProxyInstance(Status.class.getClassLoader(), new Class<?>[] { Status.class }, new InvocationHandler() {
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getId".equals(method.getName())) return id;
+                if ("equals".equals(method.getName())) return proxy == args[0];
+                if ("hashCode".equals(method.getName())) return (int) (id ^ (id >>> 32));
+                if ("toString".equals(method.getName())) return "Status " + id;
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * Creates a response with statuses of the given ids in the given order.
+     * 
+     * @param ids the status ids.
+     * @return a new response without rate limit status.
+     */
+    static ResponseList<Status> newResponseList(long... ids) {
+        StatusList statuses = new StatusList();
+        for (long id : ids) statuses.add(newStatus(id));
+        return statuses;
+    }
+
+    /**
+     * A ResponseList without rate limit status.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private static class StatusList extends ArrayList<Status> implements ResponseList<Status> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** {@inheritDoc} */
+        @Override
+        public RateLimitStatus getRateLimitStatus() {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int getAccessLevel() {
+            return 0;
+        }
+    }
+}
\ No newline at end of file
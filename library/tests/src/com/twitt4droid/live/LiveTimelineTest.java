@@ -0,0 +1,241 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.live;
+
+import com.twitt4droid.RateLimitGovernor;
+import com.twitt4droid.data.dao.TimelineDAO;
+
+import junit.framework.TestCase;
+
+import twitter4j.Status;
+import twitter4j.TwitterException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests {@link LiveTimeline} with a fake {@link LiveTimeline.Source} and a
+ * {@link TimelineDAO} that records what is saved.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class LiveTimelineTest extends TestCase {
+
+    private static final String ENDPOINT = "/test/live_timeline";
+    private static final int BUFFER_CAPACITY = 400;
+    private static final int MAX_BATCH_SIZE = 50;
+    private static final long MIN_BACKOFF_MILLIS = 5 * 1000L;
+    private static final long MAX_BACKOFF_MILLIS = 5 * 60 * 1000L;
+    private static final long WINDOW_MILLIS = 15 * 60 * 1000L;
+
+    private FakeSource source;
+    private RecordingTimelineDAO timelineDAO;
+    private LiveTimeline liveTimeline;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        source = new FakeSource();
+        timelineDAO = new RecordingTimelineDAO();
+        liveTimeline = new LiveTimeline(source, timelineDAO);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void tearDown() throws Exception {
+        liveTimeline.stop();
+        RateLimitGovernor.reset();
+        super.tearDown();
+    }
+
+    /** When more statuses arrive than the buffer holds, the oldest ones are dropped. */
+    public void testBufferOverflowDropsOldest() {
+        int count = BUFFER_CAPACITY + 50;
+        for (int id = 1; id <= count; id++) liveTimeline.offer(FakeStatuses.newStatus(id));
+        for (int i = 0; i < count / MAX_BATCH_SIZE + 1; i++) liveTimeline.flush();
+        List<Long> saved = new ArrayList<>();
+        for (List<Status> batch : timelineDAO.batches) {
+            assertTrue(batch.size() <= MAX_BATCH_SIZE);
+            for (Status status : batch) saved.add(status.getId());
+        }
+        assertEquals(BUFFER_CAPACITY, saved.size());
+        assertEquals(count - BUFFER_CAPACITY + 1, (long) Collections.min(saved));
+        assertEquals(count, (long) Collections.max(saved));
+    }
+
+    /** Each micro-batch holds the oldest buffered statuses, sorted newest first. */
+    public void testBatchIsNewestFirst() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= MAX_BATCH_SIZE + 10; id++) ids.add(id);
+        Collections.shuffle(ids, new Random(42L));
+        for (long id : ids) liveTimeline.offer(FakeStatuses.newStatus(id));
+        liveTimeline.flush();
+        assertEquals(1, timelineDAO.batches.size());
+        List<Status> batch = timelineDAO.batches.get(0);
+        assertEquals(MAX_BATCH_SIZE, batch.size());
+        List<Long> expected = new ArrayList<>(ids.subList(0, MAX_BATCH_SIZE));
+        Collections.sort(expected, Collections.reverseOrder());
+        for (int i = 0; i < batch.size(); i++) assertEquals((long) expected.get(i), batch.get(i).getId());
+        assertEquals(TimelineDAO.MAX_CACHED_STATUSES, timelineDAO.keptCount);
+    }
+
+    /** Failures other than the rate limit back off exponentially up to a maximum. */
+    public void testBackoffDoublesUpToMax() {
+        long expected = MIN_BACKOFF_MILLIS;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected, liveTimeline.nextDelayMillis(new TwitterException("Service unavailable", null, 503)));
+            expected = Math.min(expected * 2, MAX_BACKOFF_MILLIS);
+        }
+        assertEquals(MAX_BACKOFF_MILLIS, liveTimeline.nextDelayMillis(new IllegalStateException()));
+    }
+
+    /** When the rate limit is exceeded it waits until the limit resets and leaves the backoff alone. */
+    public void testRateLimitWaitsForReset() {
+        long delayMillis = liveTimeline.nextDelayMillis(new TwitterException("Too many requests", null, 429));
+        assertTrue(delayMillis > WINDOW_MILLIS - 60 * 1000L);
+        assertTrue(delayMillis <= WINDOW_MILLIS + 1000L);
+        assertFalse(RateLimitGovernor.canRequest(ENDPOINT));
+        assertEquals(MIN_BACKOFF_MILLIS, liveTimeline.nextDelayMillis(new TwitterException("Service unavailable", null, 503)));
+    }
+
+    /**
+     * Statuses pushed by the source are saved and delivered newest first, and the source is
+     * connected again since the newest saved status when it returns.
+     */
+    public void testDeliversAndReconnects() throws Exception {
+        timelineDAO.newestId = 7L;
+        source.firstStatuses = new long[] { 9L, 10L, 8L };
+        final List<Status> delivered = new CopyOnWriteArrayList<>();
+        final CountDownLatch deliveredLatch = new CountDownLatch(1);
+        liveTimeline.setOnStatusesListener(new LiveTimeline.OnStatusesListener() {
+
+            @Override
+            public void onStatuses(List<Status> statuses) {
+                delivered.addAll(statuses);
+                deliveredLatch.countDown();
+            }
+        });
+        liveTimeline.start();
+        assertTrue(source.reconnected.await(5, TimeUnit.SECONDS));
+        assertTrue(deliveredLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(7L), source.sinceIds.get(0));
+        assertEquals(3, delivered.size());
+        assertEquals(10L, delivered.get(0).getId());
+        assertEquals(9L, delivered.get(1).getId());
+        assertEquals(8L, delivered.get(2).getId());
+        liveTimeline.stop();
+        assertTrue(source.disconnected.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A source that pushes some statuses and returns the first time it's connected and blocks
+     * until disconnected afterwards.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private static class FakeSource implements LiveTimeline.Source {
+
+        private final List<Long> sinceIds = new CopyOnWriteArrayList<>();
+        private final CountDownLatch reconnected = new CountDownLatch(1);
+        private final CountDownLatch disconnected = new CountDownLatch(1);
+        private long[] firstStatuses = new long[0];
+
+        /** {@inheritDoc} */
+        @Override
+        public void connect(Long sinceId, LiveTimeline.Sink sink) {
+            sinceIds.add(sinceId);
+            if (sinceIds.size() == 1) {
+                for (long id : firstStatuses) sink.onStatus(FakeStatuses.newStatus(id));
+                return;
+            }
+            reconnected.countDown();
+            try {
+                disconnected.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void disconnect() {
+            disconnected.countDown();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String getEndpoint() {
+            return ENDPOINT;
+        }
+    }
+
+    /**
+     * A TimelineDAO that records the saved batches.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private static class RecordingTimelineDAO implements TimelineDAO {
+
+        private final List<List<Status>> batches = new CopyOnWriteArrayList<>();
+        private volatile Long newestId;
+        private volatile int keptCount;
+
+        /** {@inheritDoc} */
+        @Override
+        public List<Status> fetchList() {
+            List<Status> statuses = new ArrayList<>();
+            for (List<Status> batch : batches) statuses.addAll(batch);
+            return statuses;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Long fetchNewestId() {
+            return newestId;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void save(List<Status> statuses) {
+            batches.add(new ArrayList<>(statuses));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void deleteAll() {
+            batches.clear();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void deleteOlderThan(long timestamp) { }
+
+        /** {@inheritDoc} */
+        @Override
+        public void deleteAllButNewest(int count) {
+            keptCount = count;
+        }
+    }
+}
\ No newline at end of file
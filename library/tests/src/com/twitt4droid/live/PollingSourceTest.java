@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.live;
+
+import com.twitt4droid.RateLimitGovernor;
+
+import junit.framework.TestCase;
+
+import twitter4j.Paging;
+import twitter4j.ResponseList;
+import twitter4j.Status;
+import twitter4j.Twitter;
+import twitter4j.TwitterException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests {@link PollingSource} with a stub fetch instead of a Twitter connection.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class PollingSourceTest extends TestCase {
+
+    private static final String ENDPOINT = "/test/polling_source";
+    private static final long TIMEOUT_MILLIS = 5 * 1000L;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void tearDown() throws Exception {
+        RateLimitGovernor.reset();
+        super.tearDown();
+    }
+
+    /**
+     * The first poll is made right away, since the given id, and the statuses are pushed oldest
+     * first.
+     */
+    public void testFirstPollPushesOldestFirst() throws Exception {
+        final StubPollingSource source = new StubPollingSource(FakeStatuses.newResponseList(13L, 12L, 11L));
+        final List<Long> received = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        source.connect(10L, new LiveTimeline.Sink() {
+
+            @Override
+            public void onStatus(Status status) {
+                received.add(status.getId());
+                if (received.size() == 3) source.disconnect();
+            }
+        });
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT_MILLIS);
+        assertEquals(1, source.pagings.size());
+        assertEquals(10L, source.pagings.get(0).getSinceId());
+        assertEquals(200, source.pagings.get(0).getCount());
+        assertEquals(3, received.size());
+        assertEquals(11L, (long) received.get(0));
+        assertEquals(12L, (long) received.get(1));
+        assertEquals(13L, (long) received.get(2));
+    }
+
+    /** Without a known status the first poll isn't limited by id. */
+    public void testFirstPollWithoutSinceId() throws Exception {
+        final StubPollingSource source = new StubPollingSource(FakeStatuses.newResponseList());
+        Thread thread = connectInBackground(source);
+        assertTrue(source.fetched.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        source.disconnect();
+        thread.join(TIMEOUT_MILLIS);
+        assertFalse(thread.isAlive());
+        assertEquals(-1L, source.pagings.get(0).getSinceId());
+    }
+
+    /** While the rate limit is exhausted nothing is fetched, and disconnect still returns. */
+    public void testRateLimitedEndpointIsNotFetched() throws Exception {
+        RateLimitGovernor.recordExceeded(ENDPOINT, new TwitterException("Too many requests", null, 429));
+        StubPollingSource source = new StubPollingSource(FakeStatuses.newResponseList(1L));
+        Thread thread = connectInBackground(source);
+        assertFalse(source.fetched.await(500L, TimeUnit.MILLISECONDS));
+        source.disconnect();
+        thread.join(TIMEOUT_MILLIS);
+        assertFalse(thread.isAlive());
+        assertTrue(source.pagings.isEmpty());
+    }
+
+    /** A failed request makes connect throw, so LiveTimeline can reconnect it. */
+    public void testFetchFailureIsThrown() {
+        StubPollingSource source = new StubPollingSource(null);
+        try {
+            source.connect(null, new LiveTimeline.Sink() {
+
+                @Override
+                public void onStatus(Status status) {
+                    fail("No status expected");
+                }
+            });
+            fail("TwitterException expected");
+        } catch (TwitterException ex) {
+            assertEquals(503, ex.getStatusCode());
+        }
+    }
+
+    /**
+     * Connects the given source in a new thread.
+     * 
+     * @param source a source.
+     * @return the started thread.
+     */
+    private static Thread connectInBackground(final PollingSource source) {
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    source.connect(null, new LiveTimeline.Sink() {
+
+                        @Override
+                        public void onStatus(Status status) { }
+                    });
+                } catch (TwitterException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * A PollingSource that returns the same response to every poll and records the pagings.
+     * 
+     * @author Daniel Pedraza-Arcega
+     * @since version 1.0
+     */
+    private static class StubPollingSource extends PollingSource {
+
+        private final ResponseList<Status> response;
+        private final List<Paging> pagings = new CopyOnWriteArrayList<>();
+        private final CountDownLatch fetched = new CountDownLatch(1);
+
+        /** @param response the response to every poll or {@code null} to fail them. */
+        private StubPollingSource(ResponseList<Status> response) {
+            super(null, ENDPOINT);
+            this.response = response;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected ResponseList<Status> fetch(Twitter twitter, Paging paging) throws TwitterException {
+            pagings.add(paging);
+            fetched.countDown();
+            if (response == null) throw new TwitterException("Service unavailable", null, 503);
+            return response;
+        }
+    }
+}
\ No newline at end of file
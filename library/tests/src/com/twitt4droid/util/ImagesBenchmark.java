@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.util;
+
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+import android.test.AndroidTestCase;
+
+import com.twitt4droid.Benchmarks;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+
+/**
+ * Compares the cost of the cache key lookups of {@link Images} against the old scheme, which
+ * built a SHA-256 key with {@code BigInteger} and {@code String.format} for every lookup,
+ * memory cache hits included.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class ImagesBenchmark extends AndroidTestCase {
+
+    private static final String URL = "https://pbs.twimg.com/profile_images/378800000123456789/0123456789abcdef_normal.png";
+    private static final int ITERATIONS = 10000;
+
+    /** The disk cache keys must not change or the images already saved would be lost. */
+    public void testDiskKeyMatchesOldKey() throws Exception {
+        assertEquals(buildOldKey(URL), Images.buildDiskKey(URL));
+    }
+
+    /** Times a memory cache hit. */
+    public void testMemoryCacheHit() throws Exception {
+        Bitmap bitmap = Bitmap.createBitmap(48, 48, Bitmap.Config.ARGB_8888);
+        final LruCache<String, Bitmap> oldCache = new LruCache<>(16);
+        oldCache.put(buildOldKey(URL), bitmap);
+        Images.saveInCache(getContext(), URL, bitmap);
+        long before = Benchmarks.nanosPerRun(ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() throws Exception {
+                oldCache.get(buildOldKey(URL));
+            }
+        });
+        long after = Benchmarks.nanosPerRun(ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() {
+                Images.getFromCache(getContext(), URL);
+            }
+        });
+        Benchmarks.report("Memory cache hit", before, after);
+        assertSame(bitmap, Images.getFromCache(getContext(), URL));
+    }
+
+    /** Times building a disk cache key, which only disk cache lookups pay now. */
+    public void testDiskKey() throws Exception {
+        long before = Benchmarks.nanosPerRun(ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() throws Exception {
+                buildOldKey(URL);
+            }
+        });
+        long after = Benchmarks.nanosPerRun(ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() {
+                Images.buildDiskKey(URL);
+            }
+        });
+        Benchmarks.report("Disk cache key", before, after);
+    }
+
+    /**
+     * Builds a key like Images did before.
+     * 
+     * @param url an url.
+     * @return a key.
+     * @throws Exception if there is no SHA-256 digest.
+     */
+    private static String buildOldKey(String url) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(url.getBytes());
+        byte[] data = digest.digest();
+        return String.format("%0" + (data.length * 2) + 'x', new BigInteger(1, data));
+    }
+}
\ No newline at end of file
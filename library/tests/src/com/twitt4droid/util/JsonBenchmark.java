@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Daniel Pedraza-Arcega
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitt4droid.util;
+
+import com.twitt4droid.Benchmarks;
+
+import junit.framework.TestCase;
+
+import org.json.JSONObject;
+
+/**
+ * Compares {@link Json} against the old user snapshot code, which concatenated the fields with a
+ * StringBuilder and parsed them back with a JSONObject, and checks the escaping the old code
+ * lacked.
+ * 
+ * @author Daniel Pedraza-Arcega
+ * @since version 1.0
+ */
+public class JsonBenchmark extends TestCase {
+
+    private static final int ITERATIONS = 10000;
+    private static final long ID = 1234567890L;
+    private static final String NAME = "twitt4droid";
+    private static final String SCREEN_NAME = "twitt4droid";
+    private static final String PROFILE_IMAGE_URL = "http://pbs.twimg.com/profile_images/378800000123456789/0123456789abcdef_normal.png";
+    private static final String PROFILE_BANNER_URL = "https://pbs.twimg.com/profile_banners/1234567890/1400000000";
+    private static final String URL = "https://github.com/dan-zx/twitt4droid";
+    private static final String DESCRIPTION = "This open-source library allows you to integrate Twitter into your Android app";
+    private static final String LOCATION = "Mexico City";
+
+    /** Strings with quotes, escapes, control characters and nulls survive a round trip. */
+    public void testRoundTrip() throws Exception {
+        String tricky = "\"quoted\" \\ back\\slash\nnew line\ttab \u0001 \u00f1 \u2028";
+        String json = new Json.ObjectWriter()
+            .put("id", ID)
+            .put("tricky", tricky)
+            .put("missing", (String) null)
+            .put("verified", true)
+            .toString();
+        new JSONObject(json); // must be valid for any other parser
+        Json.ObjectReader reader = new Json.ObjectReader(json);
+        assertTrue(reader.hasNext());
+        assertEquals("id", reader.nextName());
+        assertEquals(ID, reader.nextLong());
+        assertEquals("tricky", reader.nextName());
+        assertEquals(tricky, reader.nextString());
+        assertEquals("missing", reader.nextName());
+        assertNull(reader.nextString());
+        assertEquals("verified", reader.nextName());
+        assertTrue(reader.nextBoolean());
+        assertFalse(reader.hasNext());
+    }
+
+    /** Times encoding a user snapshot. */
+    public void testEncode() throws Exception {
+        long before = Benchmarks.nanosPerRun(ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() {
+                encodeOld();
+            }
+        });
+        long after = Benchmarks.nanosPerRun(ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() {
+                encode();
+            }
+        });
+        Benchmarks.report("User snapshot encode", before, after);
+    }
+
+    /** Times decoding a user snapshot. */
+    public void testDecode() throws Exception {
+        final String oldJson = encodeOld();
+        final String json = encode();
+        long before = Benchmarks.nanosPerRun(ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() throws Exception {
+                JSONObject obj = new JSONObject(oldJson);
+                obj.getLong("id");
+                obj.getString("name");
+                obj.getString("screenName");
+                obj.getString("profileImageURL");
+                obj.getString("profileBannerURL");
+                obj.getString("url");
+                obj.getString("description");
+                obj.getString("location");
+            }
+        });
+        long after = Benchmarks.nanosPerRun(ITERATIONS, new Benchmarks.Task() {
+
+            @Override
+            public void run() throws Exception {
+                Json.ObjectReader reader = new Json.ObjectReader(json);
+                while (reader.hasNext()) {
+                    if ("id".equals(reader.nextName())) reader.nextLong();
+                    else reader.nextString();
+                }
+            }
+        });
+        Benchmarks.report("User snapshot decode", before, after);
+    }
+
+    /** @return a user snapshot encoded like Twitt4droid does. */
+    private static String encode() {
+        return new Json.ObjectWriter()
+            .put("id", ID)
+            .put("name", NAME)
+            .put("screenName", SCREEN_NAME)
+            .put("profileImageURL", PROFILE_IMAGE_URL)
+            .put("profileBannerURL", PROFILE_BANNER_URL)
+            .put("url", URL)
+            .put("description", DESCRIPTION)
+            .put("location", LOCATION)
+            .toString();
+    }
+
+    /** @return a user snapshot encoded like Twitt4droid did before, without escaping. */
+    private static String encodeOld() {
+        return new StringBuilder()
+            .append("{")
+            .append("\"id\": ").append(ID).append(", ")
+            .append("\"name\": ").append("\"").append(NAME).append("\"").append(", ")
+            .append("\"screenName\": ").append("\"").append(SCREEN_NAME).append("\"").append(", ")
+            .append("\"profileImageURL\": ").append("\"").append(PROFILE_IMAGE_URL).append("\"").append(", ")
+            .append("\"profileBannerURL\": ").append("\"").append(PROFILE_BANNER_URL).append("\"").append(", ")
+            .append("\"url\": ").append("\"").append(URL).append("\"").append(", ")
+            .append("\"description\": ").append("\"").append(DESCRIPTION).append("\"").append(", ")
+            .append("\"location\": ").append("\"").append(LOCATION).append("\"")
+            .append("}")
+            .toString();
+    }
+}
\ No newline at end of file
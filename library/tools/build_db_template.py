@@ -0,0 +1,59 @@
+#!/usr/bin/env python3
+#
+# Copyright 2014 Daniel Pedraza-Arcega
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+# Builds res/raw/db_template, the empty twitt4droid database that
+# Twitt4droidDatabaseHelper copies on first use, from res/raw/db_schema.sql.
+# Run it again whenever db_schema.sql or CURRENT_VERSION change:
+#
+#     python3 library/tools/build_db_template.py --version 2
+#
+import argparse
+import os
+import sqlite3
+
+LIBRARY_DIR = os.path.dirname(os.path.dirname(os.path.abspath(__file__)))
+SCHEMA_FILE = os.path.join(LIBRARY_DIR, 'res', 'raw', 'db_schema.sql')
+TEMPLATE_FILE = os.path.join(LIBRARY_DIR, 'res', 'raw', 'db_template')
+
+
+def main():
+    parser = argparse.ArgumentParser(description='Builds the twitt4droid database template.')
+    parser.add_argument('--version', type=int, required=True,
+                        help='Twitt4droidDatabaseHelper.CURRENT_VERSION')
+    args = parser.parse_args()
+
+    with open(SCHEMA_FILE, encoding='utf-8') as schema:
+        sql = schema.read()
+    temp_file = TEMPLATE_FILE + '.tmp'
+    if os.path.exists(temp_file):
+        os.remove(temp_file)
+    database = sqlite3.connect(temp_file)
+    try:
+        database.executescript(sql)
+        # SQLiteDatabase creates it on open otherwise, which needs a write on first launch
+        database.execute('CREATE TABLE android_metadata (locale TEXT)')
+        database.execute("INSERT INTO android_metadata VALUES ('en_US')")
+        database.execute('PRAGMA user_version = %d' % args.version)
+        database.commit()
+        database.execute('VACUUM')
+    finally:
+        database.close()
+    os.replace(temp_file, TEMPLATE_FILE)
+    print('Wrote %s (%d bytes, version %d)' % (TEMPLATE_FILE, os.path.getsize(TEMPLATE_FILE), args.version))
+
+
+if __name__ == '__main__':
+    main()